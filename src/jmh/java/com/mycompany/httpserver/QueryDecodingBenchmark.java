@@ -0,0 +1,80 @@
+package com.mycompany.httpserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * HttpRequest.getValue on a parsed request, reading the parameters like the
+ * /hello service does. Each invocation parses the request again, so the
+ * query is decoded once per request as in the server. splitOnEveryGetValue
+ * is the baseline: the previous getValue, that split the query into a new
+ * HashMap on every call.
+ *
+ * @author sebastian.cardona-p
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryDecodingBenchmark {
+
+    private static final byte[] REQUEST = ("GET /app/hello?name=Pedro&age=28&city=Bogot%C3%A1&lang=es HTTP/1.1\r\n"
+            + "Host: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpRequest request = new HttpRequest();
+
+    @Benchmark
+    public void twoValues(Blackhole blackhole) throws HttpParseException {
+        HttpRequestParser.parse(REQUEST, 0, REQUEST.length, request);
+        blackhole.consume(request.getValue("name"));
+        blackhole.consume(request.getValue("age"));
+    }
+
+    @Benchmark
+    public void encodedAndMissing(Blackhole blackhole) throws HttpParseException {
+        HttpRequestParser.parse(REQUEST, 0, REQUEST.length, request);
+        blackhole.consume(request.getValue("city"));
+        blackhole.consume(request.getValue("missing"));
+        blackhole.consume(request.getInt("age", 0));
+    }
+
+    @Benchmark
+    public void splitOnEveryGetValue(Blackhole blackhole) throws HttpParseException {
+        HttpRequestParser.parse(REQUEST, 0, REQUEST.length, request);
+        String query = request.getRawQuery();
+        blackhole.consume(legacyGetValue(query, "name"));
+        blackhole.consume(legacyGetValue(query, "age"));
+    }
+
+    /**
+     * The getValue of HttpRequest before the parameters were cached
+     */
+    private static String legacyGetValue(String query, String paramName) {
+        String[] queryParams = query.split("&");
+        Map<String, String> queryMap = new HashMap<>();
+        for (String param : queryParams) {
+            String[] nameValue = param.split("=");
+            if (nameValue.length == 2) {
+                queryMap.put(nameValue[0], nameValue[1]);
+            } else if (nameValue.length == 1) {
+                queryMap.put(nameValue[0], "");
+            }
+        }
+        return queryMap.get(paramName) != null ? queryMap.get(paramName) : "";
+    }
+}
@@ -0,0 +1,61 @@
+package com.mycompany.httpserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of the request line and headers of a typical browser request, the
+ * first step of every request in both engines. parseOnly measures the offsets
+ * pass alone, parseAndRead also decodes what the server reads of each request.
+ *
+ * @author sebastian.cardona-p
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestParsingBenchmark {
+
+    private static final byte[] REQUEST = ("GET /styles/style.css HTTP/1.1\r\n"
+            + "Host: localhost:35000\r\n"
+            + "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0\r\n"
+            + "Accept: text/css,*/*;q=0.1\r\n"
+            + "Accept-Language: es-CO,es;q=0.8,en-US;q=0.5,en;q=0.3\r\n"
+            + "Accept-Encoding: gzip, deflate, br, zstd\r\n"
+            + "Connection: keep-alive\r\n"
+            + "Referer: http://localhost:35000/index.html\r\n"
+            + "Sec-Fetch-Dest: style\r\n"
+            + "If-None-Match: \"c19-18a1b2c3d4e\"\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+
+    private final HttpRequest request = new HttpRequest();
+
+    @Benchmark
+    public int parseOnly() throws HttpParseException {
+        return HttpRequestParser.parse(REQUEST, 0, REQUEST.length, request);
+    }
+
+    @Benchmark
+    public void parseAndRead(Blackhole blackhole) throws HttpParseException {
+        HttpRequestParser.parse(REQUEST, 0, REQUEST.length, request);
+        // Lo que el servidor consulta de una solicitud de archivo estatico
+        blackhole.consume(request.getMethod());
+        blackhole.consume(request.getPath());
+        blackhole.consume(request.headerContains("Connection", "close"));
+        blackhole.consume(request.headerContains("Transfer-Encoding", "chunked"));
+        blackhole.consume(request.getHeader("Accept-Encoding"));
+        blackhole.consume(request.getHeader("If-None-Match"));
+    }
+}
@@ -0,0 +1,66 @@
+package com.mycompany.httpserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lookup of the service of a request among 40 GET routes: an exact route, a
+ * route with path parameters, a path with no route, and the plain services
+ * map lookup the router replaced, as a baseline.
+ *
+ * @author sebastian.cardona-p
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+
+    private final HttpRequest request = new HttpRequest();
+
+    @Setup
+    public void registerRoutes() throws HttpParseException {
+        for (int i = 0; i < 36; i++) {
+            HttpServer.get("/resource" + i, (req, res) -> "ok");
+        }
+        HttpServer.get("/hello", (req, res) -> "hello");
+        HttpServer.get("/users/{id}", (req, res) -> req.getPathParam("id"));
+        HttpServer.get("/users/{id}/orders/{order}", (req, res) -> req.getPathParam("order"));
+        HttpServer.get("/files/*", (req, res) -> "file");
+        byte[] bytes = "GET /app/users/42/orders/7 HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        HttpRequestParser.parse(bytes, 0, bytes.length, request);
+    }
+
+    @Benchmark
+    public Router.Route exactRoute() {
+        return HttpServer.matchRoute("GET", "/app/hello", request);
+    }
+
+    @Benchmark
+    public Router.Route pathParameters() {
+        return HttpServer.matchRoute("GET", "/app/users/42/orders/7", request);
+    }
+
+    @Benchmark
+    public Router.Route noRoute() {
+        return HttpServer.matchRoute("GET", "/app/unknown/path", request);
+    }
+
+    @Benchmark
+    public Service servicesMap() {
+        return HttpServer.services.get("/hello");
+    }
+}
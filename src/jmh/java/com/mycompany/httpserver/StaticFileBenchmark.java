@@ -0,0 +1,66 @@
+package com.mycompany.httpserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A whole static file request, from the parsed request to the last byte of
+ * the response, for the HTML, CSS, JavaScript and image paths. With source
+ * "cache" the file and its headers come from the static file cache, with
+ * "disk" the cache is disabled and every request reads the file and copies
+ * its bytes to the output, like the engines do for files that do not fit in
+ * the cache. The response goes to a stream that discards it.
+ *
+ * It must run from the project directory, where the static files are.
+ *
+ * @author sebastian.cardona-p
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticFileBenchmark {
+
+    @Param({"/index.html", "/styles/style.css", "/scripts/script.js", "/images/favicon.png"})
+    public String path;
+
+    @Param({"cache", "disk"})
+    public String source;
+
+    private byte[] requestBytes;
+    private final HttpRequest request = new HttpRequest();
+    private final OutputStream out = OutputStream.nullOutputStream();
+
+    @Setup
+    public void configure() {
+        if (source.equals("disk")) {
+            HttpServer.staticCache(0, 0);
+        } else {
+            HttpServer.staticCache(32 * 1024 * 1024, 1000);
+        }
+        // Sin Accept-Encoding para medir la copia de los bytes del archivo
+        requestBytes = ("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public boolean serve() throws IOException, HttpParseException {
+        HttpRequestParser.parse(requestBytes, 0, requestBytes.length, request);
+        return HttpServer.handlerequestType(request, out, true);
+    }
+}
@@ -0,0 +1,22 @@
+package com.mycompany.httpserver;
+
+/**
+ * What the access log writes
+ *
+ * @author sebastian.cardona-p
+ */
+public enum AccessLogLevel {
+    /**
+     * Nothing
+     */
+    OFF,
+    /**
+     * One line for each response
+     */
+    INFO,
+    /**
+     * The responses, the accepted connections and the headers of each
+     * request
+     */
+    DEBUG
+}
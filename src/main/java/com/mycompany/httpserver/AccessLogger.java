@@ -0,0 +1,307 @@
+package com.mycompany.httpserver;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Access log written by a background thread. The request threads copy the
+ * fields of a record into a slot of a preallocated ring and go on, the
+ * writer thread formats the records in batches and writes them to the file,
+ * so a request never waits for the disk. When the ring is full the record is
+ * dropped and counted instead of blocking the request.
+ *
+ * Each slot has a sequence number that tells whether it is free or holds a
+ * record, like the bounded queue of Dmitry Vyukov: a request thread takes a
+ * slot with one compare and set, the writer is the only reader. The file is
+ * rotated when it reaches its size limit, access.log is renamed to
+ * access.log.1, access.log.1 to access.log.2 and so on.
+ *
+ * @author sebastian.cardona-p
+ */
+final class AccessLogger {
+
+    private static final long IDLE_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+    private static final DateTimeFormatter DATE = DateTimeFormatter
+            .ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.US).withZone(ZoneOffset.UTC);
+
+    /**
+     * A record, the writer clears its references after writing it
+     */
+    private static final class Slot {
+
+        long timeMillis;
+        String remoteAddress;
+        String method;
+        String path;
+        boolean http11;
+        int status;
+        long nanos;
+        // Solo los registros de depuracion
+        String message;
+    }
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // Solo lo usa el hilo que escribe
+    private long head;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private OutputStream out;
+    private long fileBytes;
+    private final StringBuilder line = new StringBuilder(256);
+
+    private volatile AccessLogLevel level = AccessLogLevel.INFO;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * @param file
+     * @param maxFileBytes size at which the file is rotated
+     * @param maxFiles files kept, counting the one being written
+     * @param capacity records that can wait for the writer, rounded up to a
+     * power of two
+     * @throws IOException if the file can not be opened
+     */
+    AccessLogger(Path file, long maxFileBytes, int maxFiles, int capacity) throws IOException {
+        if (maxFileBytes <= 0 || maxFiles <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("access log limits must be positive");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        open();
+        writer = new Thread(this::writeLoop, "access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    void level(AccessLogLevel level) {
+        this.level = level;
+    }
+
+    boolean isDebug() {
+        return level == AccessLogLevel.DEBUG;
+    }
+
+    /**
+     * Log a response, it does not allocate or block
+     *
+     * @param request
+     * @param status
+     * @param nanos time to handle the request
+     */
+    void access(HttpRequest request, int status, long nanos) {
+        if (level == AccessLogLevel.OFF) {
+            return;
+        }
+        long position = claim();
+        if (position < 0) {
+            return;
+        }
+        Slot slot = slots[(int) (position & mask)];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.remoteAddress = request.getRemoteAddress();
+        slot.method = request.getMethod();
+        slot.path = request.getPath();
+        slot.http11 = request.isHttp11();
+        slot.status = status;
+        slot.nanos = nanos;
+        publish(position);
+    }
+
+    /**
+     * Log a message of the debug level
+     *
+     * @param message
+     */
+    void debug(String message) {
+        if (level != AccessLogLevel.DEBUG) {
+            return;
+        }
+        long position = claim();
+        if (position < 0) {
+            return;
+        }
+        Slot slot = slots[(int) (position & mask)];
+        slot.timeMillis = System.currentTimeMillis();
+        slot.message = message;
+        publish(position);
+    }
+
+    /**
+     * @return records dropped because the ring was full
+     */
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Write the records that are waiting and close the file
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return position of a free slot, -1 if the ring is full
+     */
+    private long claim() {
+        while (true) {
+            long position = tail.get();
+            long sequence = sequences.get((int) (position & mask));
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                // El escritor no ha liberado la casilla: el anillo esta lleno
+                dropped.increment();
+                return -1;
+            }
+            // Otro hilo tomo la casilla, se intenta con la siguiente
+        }
+    }
+
+    private void publish(long position) {
+        sequences.set((int) (position & mask), position + 1);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = closed;
+            try {
+                int written = drain();
+                if (written == 0) {
+                    out.flush();
+                    if (stopping) {
+                        out.close();
+                        return;
+                    }
+                    LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                }
+            } catch (IOException | RuntimeException ex) {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+                LockSupport.parkNanos(IDLE_WAIT_NANOS);
+                if (stopping) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the records that are ready, in order
+     *
+     * @return records written
+     * @throws IOException
+     */
+    private int drain() throws IOException {
+        int written = 0;
+        while (written < slots.length) {
+            int index = (int) (head & mask);
+            if (sequences.get(index) != head + 1) {
+                break;
+            }
+            Slot slot = slots[index];
+            format(slot);
+            slot.remoteAddress = null;
+            slot.method = null;
+            slot.path = null;
+            slot.message = null;
+            // La casilla queda libre para la siguiente vuelta del anillo
+            sequences.set(index, head + slots.length);
+            head++;
+            written++;
+
+            byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+            if (fileBytes > 0 && fileBytes + bytes.length > maxFileBytes) {
+                rotate();
+            }
+            out.write(bytes);
+            fileBytes += bytes.length;
+        }
+        return written;
+    }
+
+    /**
+     * Common log format with the time to handle the request in microseconds
+     * at the end, or the date and the message of a debug record
+     */
+    private void format(Slot slot) {
+        line.setLength(0);
+        String date = DATE.format(Instant.ofEpochMilli(slot.timeMillis));
+        if (slot.message != null) {
+            line.append('[').append(date).append("] DEBUG ").append(slot.message).append('\n');
+            return;
+        }
+        line.append(slot.remoteAddress == null ? "-" : slot.remoteAddress).append(" - - [").append(date).append("] \"")
+                .append(slot.method).append(' ').append(slot.path).append(slot.http11 ? " HTTP/1.1\" " : " HTTP/1.0\" ")
+                .append(slot.status).append(" - ").append(slot.nanos / 1000).append('\n');
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        out = new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+        fileBytes = Files.size(file);
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        if (maxFiles == 1) {
+            Files.delete(file);
+        } else {
+            Files.deleteIfExists(rotated(maxFiles - 1));
+            for (int i = maxFiles - 2; i >= 1; i--) {
+                if (Files.exists(rotated(i))) {
+                    Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
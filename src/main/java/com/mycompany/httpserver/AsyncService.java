@@ -0,0 +1,14 @@
+package com.mycompany.httpserver;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A service that answers later, when the future completes. The thread that
+ * handles the connection is not held while the future is pending, so a
+ * service that waits on I/O does not block the server.
+ *
+ * @author sebastian.cardona-p
+ */
+public interface AsyncService {
+    public CompletableFuture<String> executeService(HttpRequest req, HttpResponse res);
+}
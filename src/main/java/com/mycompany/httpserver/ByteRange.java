@@ -0,0 +1,96 @@
+package com.mycompany.httpserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One range of bytes asked for with the Range header, with the first and last
+ * byte included
+ *
+ * @author sebastian.cardona-p
+ */
+final class ByteRange {
+
+    // Mas rangos que estos se ignoran y se envia el archivo completo
+    static final int MAX_RANGES = 16;
+
+    final long first;
+    final long last;
+
+    ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * Parse a header like "bytes=0-99,200-,-500" against the length of the
+     * file
+     *
+     * @param header value of the Range header
+     * @param length length of the file
+     * @return the satisfiable ranges in the order they were asked for, an
+     * empty list if none of them is satisfiable, or null if the header is not
+     * valid and must be ignored
+     */
+    static List<ByteRange> parse(String header, long length) {
+        String value = header.trim();
+        if (!value.regionMatches(true, 0, "bytes=", 0, 6)) {
+            return null;
+        }
+        String[] specs = value.substring(6).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            long first;
+            long last;
+            try {
+                if (dash == 0) {
+                    // "-500" son los ultimos 500 bytes
+                    long suffix = parseNumber(spec.substring(1));
+                    if (suffix == 0) {
+                        continue;
+                    }
+                    first = Math.max(length - suffix, 0);
+                    last = length - 1;
+                } else {
+                    first = parseNumber(spec.substring(0, dash));
+                    last = dash == spec.length() - 1 ? Long.MAX_VALUE : parseNumber(spec.substring(dash + 1));
+                    if (last < first) {
+                        return null;
+                    }
+                    last = Math.min(last, length - 1);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (first < length) {
+                ranges.add(new ByteRange(first, last));
+            }
+        }
+        return ranges;
+    }
+
+    private static long parseNumber(String digits) {
+        if (digits.isEmpty() || digits.length() > 18) {
+            throw new NumberFormatException(digits);
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') {
+                throw new NumberFormatException(digits);
+            }
+        }
+        return Long.parseLong(digits);
+    }
+}
@@ -0,0 +1,73 @@
+package com.mycompany.httpserver;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered output of a blocking connection that sends files straight from
+ * the file channel to the socket channel
+ *
+ * @author sebastian.cardona-p
+ */
+final class ChannelOutputStream extends BufferedOutputStream implements FileTransferOutput {
+
+    private final WritableByteChannel channel;
+    private final ConnectionTimer timer;
+
+    /**
+     * @param out
+     * @param channel
+     * @param timer write deadline of the connection
+     */
+    ChannelOutputStream(OutputStream out, WritableByteChannel channel, ConnectionTimer timer) {
+        super(out);
+        this.channel = channel;
+        this.timer = timer;
+    }
+
+    @Override
+    public void transferFile(Path file, long position, long count) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            transfer(fileChannel, position, count, file);
+        }
+    }
+
+    @Override
+    public void transferTemporaryFile(Path file, long count) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE)) {
+            transfer(fileChannel, 0, count, file);
+        }
+    }
+
+    private void transfer(FileChannel fileChannel, long position, long count, Path file) throws IOException {
+        // Los headers tienen que salir antes que el archivo
+        flush();
+        long end = position + count;
+        while (position < end) {
+            long sent;
+            HttpEvents.SocketWrite event = new HttpEvents.SocketWrite();
+            event.begin();
+            timer.startWrite();
+            try {
+                sent = fileChannel.transferTo(position, end - position, channel);
+            } finally {
+                timer.endWrite();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = sent;
+                event.commit();
+            }
+            if (sent <= 0 && position >= fileChannel.size()) {
+                throw new EOFException("File shorter than its Content-Length: " + file);
+            }
+            position += sent;
+        }
+    }
+}
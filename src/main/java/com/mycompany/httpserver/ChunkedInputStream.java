@@ -0,0 +1,205 @@
+package com.mycompany.httpserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes a body sent with "Transfer-Encoding: chunked" while it is read.
+ * Chunk extensions and trailers are read and ignored, and the decoded size is
+ * limited so a client can not send an endless body
+ *
+ * @author sebastian.cardona-p
+ */
+final class ChunkedInputStream extends InputStream {
+
+    private static final int MAX_LINE_LENGTH = 1024;
+
+    private final InputStream in;
+    private final long maxSize;
+    // Linea que se esta leyendo, con su CRLF
+    private final byte[] line = new byte[MAX_LINE_LENGTH + 2];
+    private long chunkRemaining;
+    private long total;
+    private boolean started;
+    private boolean finished;
+
+    ChunkedInputStream(InputStream in, long maxSize) {
+        this.in = in;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int read = read(one, 0, 1);
+        return read < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (finished) {
+            return -1;
+        }
+        if (chunkRemaining == 0) {
+            if (started) {
+                // CRLF after the data of the previous chunk
+                if (readLine() != 0) {
+                    throw new IOException("Invalid chunked body");
+                }
+            }
+            started = true;
+            chunkRemaining = parseChunkSize(line, 0, readLine());
+            if (chunkRemaining == 0) {
+                // trailers until the blank line
+                while (readLine() != 0) {
+                }
+                finished = true;
+                return -1;
+            }
+            total += chunkRemaining;
+            if (total > maxSize) {
+                throw new IOException("Request body larger than " + maxSize + " bytes");
+            }
+        }
+        int read = in.read(b, off, (int) Math.min(len, chunkRemaining));
+        if (read < 0) {
+            throw new EOFException("Connection closed before the end of the body");
+        }
+        chunkRemaining -= read;
+        return read;
+    }
+
+    /**
+     * Read the next line of the body
+     *
+     * @return the length of the line without its CRLF
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        int b;
+        do {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Connection closed before the end of the body");
+            }
+            if (length == line.length) {
+                throw new IOException("Chunk line too long");
+            }
+            line[length++] = (byte) b;
+        } while (b != '\n');
+        return lineEnd(line, 0, length);
+    }
+
+    /**
+     * Find the end of the line that starts at pos. The two engines read the
+     * chunk lines with this method, so a body is framed the same way by both
+     *
+     * @return the index of the CRLF that ends the line or -1 if it did not
+     * arrive completely
+     * @throws IOException if the line is too long or has a CR or LF that is
+     * not part of its CRLF
+     */
+    private static int lineEnd(byte[] data, int pos, int end) throws IOException {
+        for (int i = pos; i < end; i++) {
+            if (i - pos >= MAX_LINE_LENGTH) {
+                throw new IOException("Chunk line too long");
+            }
+            if (data[i] == '\n') {
+                throw new IOException("Invalid chunked body");
+            }
+            if (data[i] == '\r') {
+                if (i + 1 == end) {
+                    return -1;
+                }
+                if (data[i + 1] != '\n') {
+                    throw new IOException("Invalid chunked body");
+                }
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a chunk size line: hex digits, optionally followed by ";" and
+     * extensions that are ignored
+     */
+    private static long parseChunkSize(byte[] data, int start, int end) throws IOException {
+        long size = 0;
+        int pos = start;
+        int digit;
+        while (pos < end && (digit = Character.digit(data[pos] & 0xFF, 16)) >= 0) {
+            if (pos - start == 15) {
+                throw new IOException("Invalid chunk size");
+            }
+            size = size * 16 + digit;
+            pos++;
+        }
+        if (pos == start || (pos < end && data[pos] != ';')) {
+            throw new IOException("Invalid chunk size");
+        }
+        return size;
+    }
+
+    /**
+     * Find the end of a chunked body that is already in memory, without
+     * decoding it. It is used by the NIO engine to know when the whole body
+     * has arrived
+     *
+     * @param data
+     * @param start first byte of the body
+     * @param end end of the received bytes
+     * @param maxSize max decoded size of the body
+     * @return the index after the body or -1 if it did not arrive completely
+     * @throws HttpParseException 400 if the body is not valid, 413 if it is
+     * larger than maxSize
+     */
+    static int findEnd(byte[] data, int start, int end, long maxSize) throws HttpParseException {
+        int pos = start;
+        long total = 0;
+        try {
+            while (true) {
+                int lineEnd = lineEnd(data, pos, end);
+                if (lineEnd < 0) {
+                    return -1;
+                }
+                long size = parseChunkSize(data, pos, lineEnd);
+                pos = lineEnd + 2;
+                if (size == 0) {
+                    break;
+                }
+                total += size;
+                if (total > maxSize) {
+                    throw new HttpParseException(413, "Payload Too Large");
+                }
+                // data and its CRLF
+                if (end - pos < size + 2) {
+                    return -1;
+                }
+                pos += (int) size;
+                if (data[pos] != '\r' || data[pos + 1] != '\n') {
+                    throw new IOException("Invalid chunked body");
+                }
+                pos += 2;
+            }
+            // trailers until the blank line
+            while (true) {
+                int lineEnd = lineEnd(data, pos, end);
+                if (lineEnd < 0) {
+                    return -1;
+                }
+                boolean blank = lineEnd == pos;
+                pos = lineEnd + 2;
+                if (blank) {
+                    return pos;
+                }
+            }
+        } catch (IOException e) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.mycompany.httpserver;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes a response body with "Transfer-Encoding: chunked" while it is
+ * written, for the bodies whose size is not known when the headers are sent.
+ * Small writes are joined in a buffer so each chunk is at least a few KB
+ *
+ * @author sebastian.cardona-p
+ */
+final class ChunkedOutputStream extends FilterOutputStream {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] buf;
+    private int count;
+    private boolean finished;
+
+    ChunkedOutputStream(OutputStream out, int chunkSize) {
+        super(out);
+        this.buf = new byte[chunkSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (finished) {
+            throw new IOException("Chunked body already finished");
+        }
+        if (count == buf.length) {
+            writeBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished) {
+            throw new IOException("Chunked body already finished");
+        }
+        if (len == 0) {
+            return;
+        }
+        // Las escrituras grandes salen como un solo chunk sin copiarlas
+        if (len >= buf.length) {
+            writeBuffer();
+            writeChunk(b, off, len);
+            return;
+        }
+        if (len > buf.length - count) {
+            writeBuffer();
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBuffer();
+        out.flush();
+    }
+
+    /**
+     * Write the pending bytes and the last chunk. The connection stays open
+     *
+     * @throws IOException
+     */
+    void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        writeBuffer();
+        out.write(LAST_CHUNK);
+        finished = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.flush();
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            writeChunk(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeChunk(byte[] b, int off, int len) throws IOException {
+        out.write(Integer.toHexString(len).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(b, off, len);
+        out.write(CRLF);
+    }
+}
@@ -0,0 +1,259 @@
+package com.mycompany.httpserver;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Read and write deadlines of one connection. The connection has a single
+ * timeout in the timing wheel, at its nearest deadline. When it fires it
+ * closes the connection if a deadline passed, or moves itself to the next
+ * one, so changing the phase of the connection usually does not touch the
+ * wheel.
+ *
+ * The read deadline is for the whole phase, a client that sends one byte at
+ * a time can not extend it. The write deadline is for each write that the
+ * client does not accept.
+ *
+ * @author sebastian.cardona-p
+ */
+final class ConnectionTimer {
+
+    private final TimingWheel wheel;
+    private final Consumer<TimeoutType> closer;
+    // En el motor bloqueante el plazo de lectura solo cuenta mientras se espera al socket
+    private final boolean blocking;
+
+    private volatile TimeoutType readPhase;
+    private volatile long readDeadline;
+    private volatile boolean reading;
+    private volatile long writeDeadline;
+
+    private TimingWheel.Timeout check;
+    private long checkAt;
+    private final AtomicBoolean expired = new AtomicBoolean();
+    private boolean stopped;
+
+    /**
+     * @param wheel
+     * @param closer closes the connection when a deadline passes, it gets
+     * the timeout that expired
+     * @param blocking true if the read deadline only applies while a read is
+     * blocked on the socket, false if it applies until the phase changes
+     */
+    ConnectionTimer(TimingWheel wheel, Consumer<TimeoutType> closer, boolean blocking) {
+        this.wheel = wheel;
+        this.closer = closer;
+        this.blocking = blocking;
+    }
+
+    /**
+     * Start a read phase with a new deadline
+     *
+     * @param phase IDLE, HEADER_READ or BODY_READ
+     * @param millis
+     */
+    void expect(TimeoutType phase, long millis) {
+        readDeadline = System.currentTimeMillis() + millis;
+        readPhase = phase;
+        arm(readDeadline);
+    }
+
+    /**
+     * Start a read phase unless the connection is already in it, so the
+     * deadline is kept while the rest of a request arrives
+     *
+     * @param phase
+     * @param millis
+     */
+    void enter(TimeoutType phase, long millis) {
+        if (readPhase != phase) {
+            expect(phase, millis);
+        }
+    }
+
+    /**
+     * No read deadline, while the server handles a request
+     */
+    void clearRead() {
+        readPhase = null;
+    }
+
+    /**
+     * Called before a blocking read of the socket
+     */
+    void startRead() {
+        reading = true;
+        TimeoutType phase = readPhase;
+        if (phase != null && System.currentTimeMillis() - readDeadline >= 0) {
+            expire(phase);
+        }
+    }
+
+    /**
+     * Called after a blocking read of the socket. The first bytes of a
+     * request end the idle phase and start the header deadline
+     *
+     * @param read bytes read
+     */
+    void endRead(int read) {
+        reading = false;
+        if (read > 0 && readPhase == TimeoutType.IDLE) {
+            expect(TimeoutType.HEADER_READ, HttpServer.headerReadTimeout());
+        }
+    }
+
+    /**
+     * Called when a write starts waiting for the client
+     */
+    void startWrite() {
+        long deadline = System.currentTimeMillis() + HttpServer.writeTimeout();
+        writeDeadline = deadline;
+        arm(deadline);
+    }
+
+    /**
+     * Called when the client accepted the write
+     */
+    void endWrite() {
+        writeDeadline = 0;
+    }
+
+    /**
+     * Remove the timeout of a connection that is closed
+     */
+    synchronized void stop() {
+        stopped = true;
+        if (check != null) {
+            check.cancel();
+            check = null;
+        }
+    }
+
+    /**
+     * @return true if the connection was closed by a timeout
+     */
+    boolean isExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @param in input of the socket
+     * @return the input with the read deadlines
+     */
+    InputStream input(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                startRead();
+                int b = -1;
+                try {
+                    b = super.read();
+                } finally {
+                    endRead(b < 0 ? 0 : 1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                startRead();
+                int read = 0;
+                try {
+                    read = in.read(b, off, len);
+                } finally {
+                    endRead(read);
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * @param out output of the socket
+     * @return the output with the write deadline
+     */
+    OutputStream output(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                HttpEvents.SocketWrite event = new HttpEvents.SocketWrite();
+                event.begin();
+                startWrite();
+                try {
+                    out.write(b, off, len);
+                } finally {
+                    endWrite();
+                }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.bytes = len;
+                    event.commit();
+                }
+            }
+        };
+    }
+
+    /**
+     * Make sure the wheel checks the connection at the deadline or before it
+     */
+    private synchronized void arm(long deadline) {
+        if (stopped || expired.get() || (check != null && checkAt - deadline <= 0)) {
+            return;
+        }
+        if (check != null) {
+            check.cancel();
+        }
+        checkAt = deadline;
+        check = wheel.schedule(this::check, deadline - System.currentTimeMillis());
+    }
+
+    private void check() {
+        long next;
+        synchronized (this) {
+            check = null;
+            if (stopped || expired.get()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            TimeoutType phase = readPhase;
+            long read = readDeadline;
+            long write = writeDeadline;
+            if (phase != null && (!blocking || reading) && now - read >= 0) {
+                expire(phase);
+                return;
+            }
+            if (write != 0 && now - write >= 0) {
+                expire(TimeoutType.WRITE);
+                return;
+            }
+            // La siguiente revision es el plazo mas cercano que todavia no vence
+            next = 0;
+            if (phase != null && read - now > 0) {
+                next = read;
+            }
+            if (write != 0 && (next == 0 || write - next < 0)) {
+                next = write;
+            }
+        }
+        if (next != 0) {
+            arm(next);
+        }
+    }
+
+    private void expire(TimeoutType type) {
+        if (expired.compareAndSet(false, true)) {
+            HttpServer.timedOut(type);
+            closer.accept(type);
+        }
+    }
+}
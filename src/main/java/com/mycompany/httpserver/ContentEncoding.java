@@ -0,0 +1,118 @@
+package com.mycompany.httpserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of static files with gzip and deflate, and the choice of the
+ * encoding from the Accept-Encoding header
+ *
+ * @author sebastian.cardona-p
+ */
+final class ContentEncoding {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private ContentEncoding() {
+    }
+
+    /**
+     * Text formats compress well, images are already compressed
+     *
+     * @param contentType
+     * @return true if it is worth to compress the type
+     */
+    static boolean isCompressible(String contentType) {
+        return contentType.startsWith("text/")
+                || contentType.equals("application/json")
+                || contentType.equals("application/javascript")
+                || contentType.equals("image/svg+xml");
+    }
+
+    /**
+     * Choose the encoding of the response, gzip is preferred when the client
+     * accepts both with the same weight
+     *
+     * @param acceptEncoding value of the Accept-Encoding header, may be null
+     * @return GZIP, DEFLATE or null to send the file without encoding
+     */
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzip = -1;
+        float deflate = -1;
+        float any = -1;
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            String coding = parts[0].trim();
+            float weight = parts.length > 1 ? weight(parts[1]) : 1;
+            if (coding.equalsIgnoreCase(GZIP) || coding.equalsIgnoreCase("x-gzip")) {
+                gzip = weight;
+            } else if (coding.equalsIgnoreCase(DEFLATE)) {
+                deflate = weight;
+            } else if (coding.equals("*")) {
+                any = weight;
+            }
+        }
+        // Las codificaciones que no se nombran toman el peso de "*"
+        gzip = gzip < 0 ? any : gzip;
+        deflate = deflate < 0 ? any : deflate;
+        if (gzip > 0 && gzip >= deflate) {
+            return GZIP;
+        }
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    private static float weight(String parameter) {
+        String value = parameter.trim();
+        if (!value.startsWith("q=") && !value.startsWith("Q=")) {
+            return 1;
+        }
+        try {
+            return Float.parseFloat(value.substring(2));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * @param data
+     * @return data in gzip format
+     */
+    static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * @param data
+     * @return data in the zlib format that HTTP calls deflate
+     */
+    static byte[] deflate(byte[] data) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(data.length / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater)) {
+            out.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return compressed.toByteArray();
+    }
+}
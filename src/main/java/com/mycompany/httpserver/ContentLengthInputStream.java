@@ -0,0 +1,56 @@
+package com.mycompany.httpserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Body of a request with Content-Length. It never reads past the body, so
+ * the next request of the connection stays untouched
+ *
+ * @author sebastian.cardona-p
+ */
+final class ContentLengthInputStream extends InputStream {
+
+    private final InputStream in;
+    private long remaining;
+
+    ContentLengthInputStream(InputStream in, long contentLength) {
+        this.in = in;
+        this.remaining = contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining == 0) {
+            return -1;
+        }
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Connection closed before the end of the body");
+        }
+        remaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (remaining == 0) {
+            return -1;
+        }
+        int read = in.read(b, off, (int) Math.min(len, remaining));
+        if (read < 0) {
+            throw new EOFException("Connection closed before the end of the body");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(in.available(), remaining);
+    }
+}
@@ -0,0 +1,35 @@
+package com.mycompany.httpserver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Output of an engine that can write a response later, when the future of an
+ * asynchronous service completes, instead of blocking the thread that
+ * handles the connection
+ *
+ * @author sebastian.cardona-p
+ */
+interface DeferredOutput {
+
+    /**
+     * Write the response when the future completes. The requests that arrive
+     * after it on the same connection wait until it is written
+     *
+     * @param completion future of the service
+     * @param writer writes the response on the thread of the connection and
+     * returns false if the connection must be closed after it
+     */
+    void defer(CompletableFuture<?> completion, BooleanSupplier writer);
+
+    /**
+     * Run a synchronous service in another thread, so a slow or large
+     * response does not stop the thread of the connection. What the task
+     * writes is sent while it runs, and it waits when the client reads slower
+     * than it writes
+     *
+     * @param task writes the response and returns false if the connection
+     * must be closed after it
+     */
+    void dispatch(WorkerPool.Task task);
+}
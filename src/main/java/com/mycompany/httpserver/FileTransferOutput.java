@@ -0,0 +1,37 @@
+package com.mycompany.httpserver;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Output of a connection that can send a part of a file with
+ * FileChannel.transferTo, so the kernel moves the bytes to the socket without
+ * copying them into the heap
+ *
+ * @author sebastian.cardona-p
+ */
+interface FileTransferOutput {
+
+    /**
+     * Send count bytes of the file starting at position, after everything
+     * already written to the output
+     *
+     * @param file
+     * @param position
+     * @param count
+     * @throws IOException if the file is shorter than position + count or the
+     * connection fails
+     */
+    void transferFile(Path file, long position, long count) throws IOException;
+
+    /**
+     * Send a whole file that nobody else uses and delete it when it was
+     * sent, or when the connection closes before that
+     *
+     * @param file
+     * @param count size of the file
+     * @throws IOException if the file is shorter than count or the
+     * connection fails
+     */
+    void transferTemporaryFile(Path file, long count) throws IOException;
+}
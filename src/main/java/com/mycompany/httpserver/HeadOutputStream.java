@@ -0,0 +1,70 @@
+package com.mycompany.httpserver;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Output of a HEAD request. The response is produced like the one of a GET,
+ * with the same headers and Content-Length, but everything after the blank
+ * line that ends the headers is discarded
+ *
+ * @author sebastian.cardona-p
+ */
+final class HeadOutputStream extends FilterOutputStream implements FileTransferOutput {
+
+    private static final byte[] HEADERS_END = {'\r', '\n', '\r', '\n'};
+
+    // Bytes of HEADERS_END already seen, 4 when the headers ended
+    private int matched;
+
+    HeadOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (matched == HEADERS_END.length) {
+            return;
+        }
+        out.write(b);
+        advance((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off;
+        while (end < off + len && matched < HEADERS_END.length) {
+            advance(b[end++]);
+        }
+        if (end > off) {
+            out.write(b, off, end - off);
+        }
+    }
+
+    @Override
+    public void transferFile(Path file, long position, long count) {
+        // El cuerpo de un archivo nunca se envia en una respuesta HEAD
+    }
+
+    @Override
+    public void transferTemporaryFile(Path file, long count) throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // La conexion sigue abierta para las siguientes solicitudes
+        flush();
+    }
+
+    private void advance(byte b) {
+        if (b == HEADERS_END[matched]) {
+            matched++;
+        } else {
+            matched = b == '\r' ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.mycompany.httpserver;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JDK Flight Recorder events of the server: one for each request and one for
+ * each phase of it, so a slow request shows whether its time went to
+ * dispatching the connection, parsing the headers, routing, the service,
+ * the static file or writing to the socket.
+ *
+ * While no recording has them enabled, an event that lives in one method is
+ * removed by the JIT and costs nothing. The request and accept events cross
+ * methods or threads, so they are only created when isEnabled says a
+ * recording wants them. The thresholds keep only the slow phases by default,
+ * a recording can change them, like
+ * -XX:StartFlightRecording:com.mycompany.httpserver.Request#threshold=0ms
+ *
+ * @author sebastian.cardona-p
+ */
+final class HttpEvents {
+
+    private static final Request REQUEST_PROBE = new Request();
+    private static final Accept ACCEPT_PROBE = new Accept();
+
+    private HttpEvents() {
+    }
+
+    /**
+     * A whole request, from its parsed headers until its response is written
+     */
+    @Name("com.mycompany.httpserver.Request")
+    @Label("HTTP Request")
+    @Category("HTTP Server")
+    @Description("A request from its parsed headers until its response is written")
+    @Threshold("5 ms")
+    @StackTrace(false)
+    static final class Request extends Event {
+
+        @Label("Method")
+        String method;
+
+        @Label("Path")
+        String path;
+
+        @Label("Handler")
+        @Description("Route pattern or type of static file")
+        String handler;
+
+        @Label("Status")
+        int status;
+
+        @Label("Remote Address")
+        String remoteAddress;
+    }
+
+    /**
+     * Time from accepting a connection until a thread starts handling it
+     */
+    @Name("com.mycompany.httpserver.Accept")
+    @Label("HTTP Accept")
+    @Category("HTTP Server")
+    @Description("From accepting a connection until its handler thread or reactor starts with it")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Accept extends Event {
+
+        @Label("Listener")
+        int listener;
+    }
+
+    @Name("com.mycompany.httpserver.HeaderParse")
+    @Label("HTTP Header Parse")
+    @Category("HTTP Server")
+    @Description("Parsing the request line and the headers that arrived")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class HeaderParse extends Event {
+
+        @Label("Bytes")
+        @DataAmount
+        int bytes;
+    }
+
+    @Name("com.mycompany.httpserver.Routing")
+    @Label("HTTP Routing")
+    @Category("HTTP Server")
+    @Description("Finding the route of a service")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Routing extends Event {
+
+        @Label("Path")
+        String path;
+
+        @Label("Handler")
+        String handler;
+    }
+
+    @Name("com.mycompany.httpserver.Service")
+    @Label("HTTP Service")
+    @Category("HTTP Server")
+    @Description("Running a service, or starting it if it is asynchronous")
+    @Threshold("1 ms")
+    static final class Service extends Event {
+
+        @Label("Handler")
+        String handler;
+    }
+
+    @Name("com.mycompany.httpserver.StaticFile")
+    @Label("HTTP Static File")
+    @Category("HTTP Server")
+    @Description("Answering a request of a static file, from the cache or the disk")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class StaticFile extends Event {
+
+        @Label("File")
+        String file;
+
+        @Label("Status")
+        int status;
+    }
+
+    @Name("com.mycompany.httpserver.SocketWrite")
+    @Label("HTTP Socket Write")
+    @Category("HTTP Server")
+    @Description("Writing a response to the socket")
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class SocketWrite extends Event {
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+    }
+
+    /**
+     * @return a started request event, null if no recording wants it
+     */
+    static Request startRequest() {
+        if (!REQUEST_PROBE.isEnabled()) {
+            return null;
+        }
+        Request event = new Request();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * @return a started accept event, null if no recording wants it
+     */
+    static Accept startAccept() {
+        if (!ACCEPT_PROBE.isEnabled()) {
+            return null;
+        }
+        Accept event = new Accept();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * End the accept event of a connection
+     *
+     * @param event null when it was not recorded
+     * @param listener
+     */
+    static void accepted(Accept event, int listener) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.listener = listener;
+                event.commit();
+            }
+        }
+    }
+}
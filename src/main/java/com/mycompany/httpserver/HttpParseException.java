@@ -0,0 +1,29 @@
+package com.mycompany.httpserver;
+
+/**
+ * A request that can not be parsed. It carries the status the server answers
+ * with before closing the connection
+ *
+ * @author sebastian.cardona-p
+ */
+public class HttpParseException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+    private final String reason;
+
+    public HttpParseException(int status, String reason) {
+        super(status + " " + reason);
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
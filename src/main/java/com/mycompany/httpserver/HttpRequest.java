@@ -4,36 +4,549 @@
  */
 package com.mycompany.httpserver;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
 
 /**
+ * A request received by the server. When it comes from the parser it only
+ * holds the offsets of each part inside the received bytes, the method, path,
+ * query and headers are decoded the first time they are asked for.
+ *
+ * The server reuses the same object for every request of a connection, so it
+ * is only valid while its request is being handled.
  *
  * @author sebastian.cardona-p
  */
 public class HttpRequest {
 
     URI reuestUri = null;
+
+    // Offsets inside buffer filled by HttpRequestParser
+    byte[] buffer;
+    int methodStart;
+    int methodEnd;
+    int pathStart;
+    int pathEnd;
+    int queryStart;
+    int queryEnd;
+    boolean http11;
+    int headerCount;
+    int[] headers = new int[4 * 8];
+
+    private String method;
+    private String path;
+    private String query;
+    private InputStream body;
+    private long contentLength;
+
+    // Path parameters captured by the router, as offsets inside pathParamSource
+    private int[] pathParams = new int[0];
+    private String[] pathParamNames;
+    private String pathParamSource;
+
+    private QueryParams queryParams;
+    private boolean queryParsed;
+
+    // IP of the client, it is the same for every request of the connection
+    private String remoteAddress;
+
+    // Evento de Flight Recorder de la solicitud, null si no se esta grabando
+    HttpEvents.Request event;
+
     HttpRequest(URI requestUri) {
         reuestUri = requestUri;
     }
-    public String getValue(String paramName) {
-        String query = reuestUri.getQuery();
+
+    HttpRequest() {
+    }
+
+    /**
+     * Clear the values of the previous request before parsing the next one
+     *
+     * @param buf bytes that hold the new request
+     */
+    void reset(byte[] buf) {
+        reuestUri = null;
+        buffer = buf;
+        headerCount = 0;
+        queryStart = -1;
+        method = null;
+        path = null;
+        query = null;
+        body = null;
+        contentLength = 0;
+        pathParamNames = null;
+        pathParamSource = null;
+        queryParsed = false;
+    }
+
+    /**
+     * Use a copy of the received bytes, with the request at the same offsets,
+     * when the buffer where it arrived is going to be reused before the
+     * request ends
+     *
+     * @param copy
+     */
+    void copyBuffer(byte[] copy) {
+        buffer = copy;
+    }
+
+    /**
+     * The array where the router saves the offsets of the parameters, it is
+     * reused by every request of the connection
+     *
+     * @param count max number of parameters
+     * @return an array with room for the start and end of each parameter
+     */
+    int[] pathParamOffsets(int count) {
+        if (pathParams.length < count * 2) {
+            pathParams = new int[count * 2];
+        }
+        return pathParams;
+    }
+
+    void setPathParams(String source, String[] names) {
+        pathParamSource = source;
+        pathParamNames = names;
+    }
+
+    /**
+     * Get a parameter of the route, like id in "/users/{id}"
+     *
+     * @param name
+     * @return the value or null if the route has no parameter with that name
+     */
+    public String getPathParam(String name) {
+        if (pathParamNames == null) {
+            return null;
+        }
+        for (int i = 0; i < pathParamNames.length; i++) {
+            if (pathParamNames[i].equals(name)) {
+                return pathParamSource.substring(pathParams[i * 2], pathParams[i * 2 + 1]);
+            }
+        }
+        return null;
+    }
+
+    void setRemoteAddress(String remoteAddress) {
+        this.remoteAddress = remoteAddress;
+    }
+
+    /**
+     * @return the IP of the client or null if the request does not come from
+     * a connection
+     */
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    void setBody(InputStream body, long contentLength) {
+        this.body = body;
+        this.contentLength = contentLength;
+    }
+
+    void addHeader(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int index = headerCount * 4;
+        if (index == headers.length) {
+            int[] grown = new int[headers.length * 2];
+            System.arraycopy(headers, 0, grown, 0, headers.length);
+            headers = grown;
+        }
+        headers[index] = nameStart;
+        headers[index + 1] = nameEnd;
+        headers[index + 2] = valueStart;
+        headers[index + 3] = valueEnd;
+        headerCount++;
+    }
+
+    /**
+     * @return the request line and the headers as they were received, for
+     * the debug log
+     */
+    String head() {
+        StringBuilder head = new StringBuilder(getMethod()).append(' ').append(getPath());
+        String rawQuery = getRawQuery();
+        if (rawQuery != null) {
+            head.append('?').append(rawQuery);
+        }
+        head.append(isHttp11() ? " HTTP/1.1" : " HTTP/1.0");
+        for (int h = 0; buffer != null && h < headerCount; h++) {
+            int index = h * 4;
+            head.append("\n    ").append(new String(buffer, headers[index], headers[index + 1] - headers[index], StandardCharsets.ISO_8859_1))
+                    .append(": ").append(new String(buffer, headers[index + 2], headers[index + 3] - headers[index + 2], StandardCharsets.ISO_8859_1));
+        }
+        return head.toString();
+    }
+
+    public String getMethod() {
+        if (method == null) {
+            method = buffer == null ? "GET" : new String(buffer, methodStart, methodEnd - methodStart, StandardCharsets.US_ASCII);
+        }
+        return method;
+    }
+
+    /**
+     * @return the percent decoded path of the request
+     */
+    public String getPath() {
+        if (path == null) {
+            if (reuestUri != null) {
+                path = reuestUri.getPath();
+            } else if (buffer == null || pathStart == pathEnd) {
+                path = "/";
+            } else {
+                path = decode(buffer, pathStart, pathEnd);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * @return the percent decoded query of the request or null if it has none
+     */
+    public String getQuery() {
         if (query == null) {
-            return "";
+            if (reuestUri != null) {
+                query = reuestUri.getQuery();
+            } else if (buffer != null && queryStart >= 0) {
+                query = decode(buffer, queryStart, queryEnd);
+            }
+        }
+        return query;
+    }
+
+    /**
+     * The body of the request as it arrives from the connection, already
+     * decoded if it was sent chunked. It ends at the end of the body, so it
+     * can be read in small parts without holding the whole payload in memory
+     *
+     * @return the body, an empty stream if the request has none
+     */
+    public InputStream getBody() {
+        if (body == null) {
+            body = InputStream.nullInputStream();
+        }
+        return body;
+    }
+
+    /**
+     * @return the size of the body, 0 if there is no body and -1 if it was
+     * sent chunked and the size is not known yet
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    /**
+     * Read the whole body as UTF-8 text. Only for small bodies, large ones
+     * should be read from getBody()
+     *
+     * @return the body or an empty string
+     * @throws IOException
+     */
+    public String getBodyAsString() throws IOException {
+        return new String(getBody().readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return true for HTTP/1.1 requests, false for HTTP/1.0
+     */
+    public boolean isHttp11() {
+        return buffer == null || http11;
+    }
+
+    /**
+     * @param name header name, case insensitive
+     * @return the value of the first header with that name or null
+     */
+    public String getHeader(String name) {
+        int index = indexOfHeader(name);
+        if (index < 0) {
+            return null;
+        }
+        return new String(buffer, headers[index + 2], headers[index + 3] - headers[index + 2], StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Check if a comma separated header, like Connection, contains a token
+     * without decoding it
+     *
+     * @param name header name, case insensitive
+     * @param token value to look for, case insensitive
+     * @return true if any header with that name contains the token
+     */
+    public boolean headerContains(String name, String token) {
+        for (int h = 0; h < headerCount * 4; h += 4) {
+            if (!nameEquals(h, name)) {
+                continue;
+            }
+            int end = headers[h + 3] - token.length();
+            for (int i = headers[h + 2]; i <= end; i++) {
+                if (regionEqualsIgnoreCase(i, token)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param name header name, case insensitive
+     * @return true if the request has a header with that name
+     */
+    boolean hasHeader(String name) {
+        return indexOfHeader(name) >= 0;
+    }
+
+    /**
+     * @param name header name, case insensitive
+     * @return true if the request has several headers with that name and
+     * their values are not all the same
+     */
+    boolean hasConflictingHeaders(String name) {
+        int first = indexOfHeader(name);
+        if (first < 0) {
+            return false;
+        }
+        for (int h = first + 4; h < headerCount * 4; h += 4) {
+            if (nameEquals(h, name) && !Arrays.equals(buffer, headers[h + 2], headers[h + 3],
+                    buffer, headers[first + 2], headers[first + 3])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the body is sent chunked: chunked is the last coding of
+     * Transfer-Encoding and it appears only once, in all the headers with
+     * that name
+     *
+     * @return false without Transfer-Encoding or with another framing
+     */
+    boolean isChunked() {
+        int chunked = 0;
+        boolean last = false;
+        for (int h = 0; h < headerCount * 4; h += 4) {
+            if (!nameEquals(h, "Transfer-Encoding")) {
+                continue;
+            }
+            int end = headers[h + 3];
+            int i = headers[h + 2];
+            while (i <= end) {
+                int comma = i;
+                while (comma < end && buffer[comma] != ',') {
+                    comma++;
+                }
+                int start = i;
+                int stop = comma;
+                while (start < stop && (buffer[start] == ' ' || buffer[start] == '\t')) {
+                    start++;
+                }
+                while (stop > start && (buffer[stop - 1] == ' ' || buffer[stop - 1] == '\t')) {
+                    stop--;
+                }
+                // Las listas pueden tener elementos vacios, como "chunked, "
+                if (stop > start) {
+                    last = stop - start == 7 && regionEqualsIgnoreCase(start, "chunked");
+                    if (last) {
+                        chunked++;
+                    }
+                }
+                i = comma + 1;
+            }
+        }
+        return last && chunked == 1;
+    }
+
+    /**
+     * Read a numeric header like Content-Length without decoding it
+     *
+     * @param name header name, case insensitive
+     * @return the value, -1 if the header is missing
+     * @throws NumberFormatException if the value is not a non negative number
+     */
+    long getLongHeader(String name) {
+        int index = indexOfHeader(name);
+        if (index < 0) {
+            return -1;
+        }
+        int start = headers[index + 2];
+        int end = headers[index + 3];
+        if (start == end || end - start > 18) {
+            throw new NumberFormatException("Invalid " + name);
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer[i];
+            if (b < '0' || b > '9') {
+                throw new NumberFormatException("Invalid " + name);
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private int indexOfHeader(String name) {
+        for (int h = 0; h < headerCount * 4; h += 4) {
+            if (nameEquals(h, name)) {
+                return h;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int h, String name) {
+        return headers[h + 1] - headers[h] == name.length() && regionEqualsIgnoreCase(headers[h], name);
+    }
+
+    private boolean regionEqualsIgnoreCase(int offset, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            int a = buffer[offset + i];
+            int b = text.charAt(i);
+            if (a == b) {
+                continue;
+            }
+            int lower = a | 0x20;
+            if (lower != (b | 0x20) || lower < 'a' || lower > 'z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Percent decode bytes as UTF-8, without copying when there is nothing to
+     * decode
+     */
+    static String decode(byte[] buf, int start, int end) {
+        int percent = start;
+        while (percent < end && buf[percent] != '%') {
+            percent++;
         }
-        String[] queryParams = query.split("&");
-        Map<String, String> queryMap = new HashMap<>();
-        for (String param : queryParams) {
-            String[] nameValue = param.split("=");
-            if (nameValue.length == 2) {
-                queryMap.put(nameValue[0], nameValue[1]);
-            } else if (nameValue.length == 1) {
-                queryMap.put(nameValue[0], "");
+        if (percent == end) {
+            return new String(buf, start, end - start, StandardCharsets.UTF_8);
+        }
+        ByteArrayOutputStream decoded = new ByteArrayOutputStream(end - start);
+        decoded.write(buf, start, percent - start);
+        for (int i = percent; i < end; i++) {
+            int hi;
+            int lo;
+            if (buf[i] == '%' && i + 2 < end && (hi = Character.digit(buf[i + 1], 16)) >= 0
+                    && (lo = Character.digit(buf[i + 2], 16)) >= 0) {
+                decoded.write((hi << 4) | lo);
+                i += 2;
+            } else {
+                decoded.write(buf[i]);
             }
         }
+        return decoded.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the query as it was received, without decoding, or null if the
+     * request has none
+     */
+    public String getRawQuery() {
+        if (reuestUri != null) {
+            return reuestUri.getRawQuery();
+        }
+        if (buffer == null || queryStart < 0) {
+            return null;
+        }
+        return new String(buffer, queryStart, queryEnd - queryStart, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parse the query the first time a parameter is asked for
+     */
+    private QueryParams queryParams() {
+        if (queryParsed) {
+            return queryParams;
+        }
+        if (queryParams == null) {
+            queryParams = new QueryParams();
+        }
+        if (reuestUri != null && reuestUri.getRawQuery() != null) {
+            byte[] raw = reuestUri.getRawQuery().getBytes(StandardCharsets.UTF_8);
+            queryParams.parse(raw, 0, raw.length);
+        } else if (reuestUri == null && buffer != null && queryStart >= 0) {
+            queryParams.parse(buffer, queryStart, queryEnd);
+        } else {
+            queryParams.clear();
+        }
+        queryParsed = true;
+        return queryParams;
+    }
+
+    /**
+     * @return the query parameters sorted, the same for any order they were
+     * sent in
+     */
+    String normalizedQuery() {
+        return queryParams().normalized();
+    }
 
-        return queryMap.get(paramName) != null ? queryMap.get(paramName) : "";
+    /**
+     * Get a query parameter, decoded
+     *
+     * @param paramName
+     * @return the last value of the parameter or "" if it is not in the query
+     */
+    public String getValue(String paramName) {
+        String value = queryParams().get(paramName);
+        return value != null ? value : "";
+    }
+
+    /**
+     * Get every value of a query parameter that appears more than once, like
+     * "tag=a&amp;tag=b"
+     *
+     * @param paramName
+     * @return the values in order, an empty list if it is not in the query
+     */
+    public List<String> getValues(String paramName) {
+        return queryParams().getAll(paramName);
+    }
+
+    /**
+     * @param paramName
+     * @param defaultValue
+     * @return the last value of the parameter as an int, or defaultValue if
+     * it is not in the query or it is not a number
+     */
+    public int getInt(String paramName, int defaultValue) {
+        String value = queryParams().get(paramName);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @param paramName
+     * @param defaultValue
+     * @return the last value of the parameter as a long, or defaultValue if
+     * it is not in the query or it is not a number
+     */
+    public long getLong(String paramName, long defaultValue) {
+        String value = queryParams().get(paramName);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
     }
 }
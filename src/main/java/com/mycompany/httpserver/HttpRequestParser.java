@@ -0,0 +1,287 @@
+package com.mycompany.httpserver;
+
+/**
+ * Parser of the request line and headers that works directly on the received
+ * bytes. It does not create strings, it only records in the HttpRequest the
+ * offsets of the method, path, query, version and every header, the values
+ * are decoded later only if somebody asks for them.
+ *
+ * @author sebastian.cardona-p
+ */
+final class HttpRequestParser {
+
+    static final int NEED_MORE = -1;
+
+    private static final int MAX_METHOD_LENGTH = 16;
+
+    private static volatile int maxHeaderSize = 8192;
+    private static volatile int maxHeaderCount = 100;
+
+    private HttpRequestParser() {
+    }
+
+    static void limits(int headerSize, int headerCount) {
+        maxHeaderSize = headerSize;
+        maxHeaderCount = headerCount;
+    }
+
+    static int maxHeaderSize() {
+        return maxHeaderSize;
+    }
+
+    /**
+     * Parse the request that starts at start
+     *
+     * @param buf
+     * @param start first byte of the request
+     * @param end end of the received bytes
+     * @param request where the offsets are recorded
+     * @return the index after the blank line that ends the headers or
+     * NEED_MORE if the headers were not received completely
+     * @throws HttpParseException if the request is not valid or exceeds the
+     * limits
+     */
+    static int parse(byte[] buf, int start, int end, HttpRequest request) throws HttpParseException {
+        HttpEvents.HeaderParse event = new HttpEvents.HeaderParse();
+        event.begin();
+        int headerEnd = parseHeaders(buf, start, end, request);
+        event.end();
+        if (headerEnd != NEED_MORE && event.shouldCommit()) {
+            event.bytes = headerEnd - start;
+            event.commit();
+        }
+        return headerEnd;
+    }
+
+    private static int parseHeaders(byte[] buf, int start, int end, HttpRequest request) throws HttpParseException {
+        int limit = Math.min(end, start + maxHeaderSize);
+        int pos = start;
+
+        // Se permiten lineas vacias antes de la linea de solicitud
+        while (pos < limit && (buf[pos] == '\r' || buf[pos] == '\n')) {
+            pos++;
+        }
+
+        request.reset(buf);
+
+        // method
+        int methodStart = pos;
+        while (pos < limit && buf[pos] != ' ') {
+            if (!isTokenChar(buf[pos]) || pos - methodStart >= MAX_METHOD_LENGTH) {
+                throw new HttpParseException(400, "Bad Request");
+            }
+            pos++;
+        }
+        if (pos >= limit) {
+            return needMore(start, end);
+        }
+        if (pos == methodStart) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        request.methodStart = methodStart;
+        request.methodEnd = pos;
+        pos++;
+
+        // request target, the absolute form keeps only the path and query
+        int targetStart = pos;
+        if (pos < limit && buf[pos] != '/' && buf[pos] != '*') {
+            int scheme = pos;
+            while (scheme < limit && buf[scheme] != ':' && buf[scheme] != ' ') {
+                scheme++;
+            }
+            if (scheme + 2 >= limit) {
+                return needMore(start, end, 414, "URI Too Long");
+            }
+            if (buf[scheme] == ':' && buf[scheme + 1] == '/' && buf[scheme + 2] == '/') {
+                pos = scheme + 3;
+                while (pos < limit && buf[pos] != '/' && buf[pos] != ' ') {
+                    pos++;
+                }
+            }
+        }
+        request.pathStart = pos;
+        request.queryStart = -1;
+        while (pos < limit && buf[pos] != ' ') {
+            byte b = buf[pos];
+            if (b <= ' ' || b == 127) {
+                throw new HttpParseException(400, "Bad Request");
+            }
+            if (b == '?' && request.queryStart < 0) {
+                request.pathEnd = pos;
+                request.queryStart = pos + 1;
+            } else if (b == '#') {
+                break;
+            }
+            pos++;
+        }
+        int targetEnd = pos;
+        while (pos < limit && buf[pos] != ' ') {
+            pos++;
+        }
+        if (pos >= limit) {
+            return needMore(start, end, 414, "URI Too Long");
+        }
+        if (request.queryStart < 0) {
+            request.pathEnd = targetEnd;
+        } else {
+            request.queryEnd = targetEnd;
+        }
+        if (targetEnd == targetStart || (buf[request.pathStart] != '/' && buf[request.pathStart] != '*'
+                && request.pathStart != request.pathEnd)) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        pos++;
+
+        // HTTP version
+        if (limit - pos < 8) {
+            return needMore(start, end);
+        }
+        if (buf[pos] != 'H' || buf[pos + 1] != 'T' || buf[pos + 2] != 'T' || buf[pos + 3] != 'P'
+                || buf[pos + 4] != '/' || !isDigit(buf[pos + 5]) || buf[pos + 6] != '.' || !isDigit(buf[pos + 7])) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (buf[pos + 5] != '1') {
+            throw new HttpParseException(505, "HTTP Version Not Supported");
+        }
+        request.http11 = buf[pos + 7] != '0';
+        pos += 8;
+        pos = endOfLine(buf, pos, limit);
+        if (pos == NEED_MORE) {
+            return needMore(start, end);
+        }
+
+        // headers until the blank line
+        while (true) {
+            if (pos >= limit) {
+                return needMore(start, end);
+            }
+            if (buf[pos] == '\r' || buf[pos] == '\n') {
+                int headerEnd = endOfLine(buf, pos, limit);
+                if (headerEnd == NEED_MORE) {
+                    return needMore(start, end);
+                }
+                checkFraming(request);
+                return headerEnd;
+            }
+            if (buf[pos] == ' ' || buf[pos] == '\t') {
+                // obsolete line folding
+                throw new HttpParseException(400, "Bad Request");
+            }
+
+            int nameStart = pos;
+            while (pos < limit && buf[pos] != ':') {
+                if (!isTokenChar(buf[pos])) {
+                    throw new HttpParseException(400, "Bad Request");
+                }
+                pos++;
+            }
+            if (pos >= limit) {
+                return needMore(start, end);
+            }
+            if (pos == nameStart) {
+                throw new HttpParseException(400, "Bad Request");
+            }
+            int nameEnd = pos;
+            pos++;
+
+            while (pos < limit && (buf[pos] == ' ' || buf[pos] == '\t')) {
+                pos++;
+            }
+            int valueStart = pos;
+            while (pos < limit && buf[pos] != '\r' && buf[pos] != '\n') {
+                if (buf[pos] == 0) {
+                    throw new HttpParseException(400, "Bad Request");
+                }
+                pos++;
+            }
+            int valueEnd = pos;
+            while (valueEnd > valueStart && (buf[valueEnd - 1] == ' ' || buf[valueEnd - 1] == '\t')) {
+                valueEnd--;
+            }
+            pos = endOfLine(buf, pos, limit);
+            if (pos == NEED_MORE) {
+                return needMore(start, end);
+            }
+
+            if (request.headerCount >= maxHeaderCount) {
+                throw new HttpParseException(431, "Request Header Fields Too Large");
+            }
+            request.addHeader(nameStart, nameEnd, valueStart, valueEnd);
+        }
+    }
+
+    /**
+     * Reject a body framing that a proxy in front of the server could read
+     * differently, RFC 9112 sections 6.1 and 6.3: Transfer-Encoding must end
+     * with chunked and can not come with Content-Length, and repeated
+     * Content-Length headers must have the same value
+     *
+     * @param request with its headers parsed
+     * @throws HttpParseException 400 for an ambiguous framing
+     */
+    private static void checkFraming(HttpRequest request) throws HttpParseException {
+        if (request.hasConflictingHeaders("Content-Length")) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (request.hasHeader("Transfer-Encoding")
+                && (!request.isChunked() || request.hasHeader("Content-Length"))) {
+            throw new HttpParseException(400, "Bad Request");
+        }
+    }
+
+    /**
+     * The headers are incomplete, ask for more bytes unless the limit was
+     * already reached
+     */
+    private static int needMore(int start, int end) throws HttpParseException {
+        return needMore(start, end, 431, "Request Header Fields Too Large");
+    }
+
+    private static int needMore(int start, int end, int status, String reason) throws HttpParseException {
+        if (end - start >= maxHeaderSize) {
+            throw new HttpParseException(status, reason);
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * @return the index after the CRLF (or bare LF) at pos or NEED_MORE
+     */
+    private static int endOfLine(byte[] buf, int pos, int limit) throws HttpParseException {
+        if (pos >= limit) {
+            return NEED_MORE;
+        }
+        if (buf[pos] == '\n') {
+            return pos + 1;
+        }
+        if (buf[pos] != '\r') {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        if (pos + 1 >= limit) {
+            return NEED_MORE;
+        }
+        if (buf[pos + 1] != '\n') {
+            throw new HttpParseException(400, "Bad Request");
+        }
+        return pos + 2;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * tchar of RFC 9110
+     */
+    private static boolean isTokenChar(byte b) {
+        if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || isDigit(b)) {
+            return true;
+        }
+        switch (b) {
+            case '!', '#', '$', '%', '&', '\'', '*', '+', '-', '.', '^', '_', '`', '|', '~':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
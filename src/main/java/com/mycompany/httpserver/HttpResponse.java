@@ -1,13 +1,385 @@
-/*
- * Click nbfs://nbhost/SystemFileSystem/Templates/Licenses/license-default.txt to change this license
- * Click nbfs://nbhost/SystemFileSystem/Templates/Classes/Class.java to edit this template
- */
 package com.mycompany.httpserver;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
+ * Response of a service. The service can set the status and the headers and
+ * return the body as a String, or write the body to getOutputStream so large
+ * or binary bodies go to the socket without building a String.
+ *
+ * The headers are sent with the first byte of the body. A body written to the
+ * stream without a Content-Length header is sent with
+ * "Transfer-Encoding: chunked", or closing the connection at its end for
+ * HTTP/1.0 clients.
  *
  * @author sebastian.cardona-p
  */
 public class HttpResponse {
-    
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/json";
+    private static final int CHUNK_SIZE = 8192;
+
+    private int status = 200;
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    // null cuando la respuesta no esta asociada a una conexion
+    private final OutputStream connection;
+    private final boolean chunkedAllowed;
+    private boolean keepAlive;
+    private final ByteArrayOutputStream buffer;
+    private BodyOutputStream body;
+
+    /**
+     * A response that keeps the body in memory, it is not sent to any client
+     */
+    public HttpResponse() {
+        this.connection = null;
+        this.chunkedAllowed = false;
+        this.buffer = new ByteArrayOutputStream();
+    }
+
+    /**
+     * @param connection output of the connection, the headers and the body are
+     * written to it
+     * @param keepAlive true if the connection stays open after the response
+     * @param chunkedAllowed true if the client understands chunked bodies
+     */
+    HttpResponse(OutputStream connection, boolean keepAlive, boolean chunkedAllowed) {
+        this.connection = connection;
+        this.keepAlive = keepAlive;
+        this.chunkedAllowed = chunkedAllowed;
+        this.buffer = null;
+    }
+
+    /**
+     * @param code like 201 or 404
+     * @return this response
+     * @throws IllegalStateException if the headers were already sent
+     */
+    public HttpResponse status(int code) {
+        if (code < 100 || code > 999) {
+            throw new IllegalArgumentException("Invalid status " + code);
+        }
+        checkNotCommitted();
+        status = code;
+        return this;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Set a header, replacing the previous value of the same name
+     *
+     * @param name
+     * @param value
+     * @return this response
+     * @throws IllegalStateException if the headers were already sent
+     */
+    public HttpResponse header(String name, String value) {
+        checkNotCommitted();
+        if (name.isEmpty() || !isHeaderText(name) || !isHeaderText(value) || name.indexOf(':') >= 0) {
+            throw new IllegalArgumentException("Invalid header " + name);
+        }
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * @param name
+     * @return the value of the header or null if it was not set
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @param contentType like "text/plain", the default is application/json
+     * @return this response
+     */
+    public HttpResponse contentType(String contentType) {
+        return header("Content-Type", contentType);
+    }
+
+    /**
+     * The body of the response. The value returned by the service is ignored
+     * once something is written here. Closing the stream ends the body, the
+     * connection stays open
+     *
+     * @return the stream
+     */
+    public OutputStream getOutputStream() {
+        if (body == null) {
+            body = new BodyOutputStream();
+        }
+        return body;
+    }
+
+    /**
+     * The body of the response as a channel, for services that produce
+     * ByteBuffers
+     *
+     * @return the channel
+     */
+    public WritableByteChannel getChannel() {
+        return Channels.newChannel(getOutputStream());
+    }
+
+    /**
+     * @return true if the headers were already sent
+     */
+    public boolean isCommitted() {
+        return body != null && body.target != null;
+    }
+
+    /**
+     * End the response after the service returns. If the service did not
+     * write to the body stream the value it returned is sent as the body
+     *
+     * @param result value returned by the service, may be null
+     * @throws IOException if the connection fails or the service wrote a body
+     * of a different size than its Content-Length
+     */
+    void finish(String result) throws IOException {
+        if (isCommitted()) {
+            body.close();
+            return;
+        }
+        byte[] bytes = result == null ? new byte[0] : result.getBytes(StandardCharsets.UTF_8);
+        if (connection == null) {
+            buffer.write(bytes);
+            return;
+        }
+        keepAlive = keepAlive && !closeRequested();
+        connection.write(encodeHeaders(bytes.length, keepAlive));
+        connection.write(bytes);
+        // Cerrar un stream que se pidio pero no se uso no debe enviar nada mas
+        if (body != null) {
+            body.closed = true;
+        }
+    }
+
+    /**
+     * Replace the response with an error, before the headers were sent
+     *
+     * @param status
+     * @throws IOException
+     */
+    void sendError(int status) throws IOException {
+        checkNotCommitted();
+        headers.clear();
+        this.status = status;
+        contentType("text/plain");
+        finish(statusLine(status));
+    }
+
+    /**
+     * Build the status line and the headers set by the service
+     *
+     * @param contentLength
+     * @param keepAlive
+     * @return the headers ending with the blank line
+     */
+    byte[] encodeHeaders(long contentLength, boolean keepAlive) {
+        return HttpServer.headers(statusLine(), contentType(), contentLength, keepAlive, extraHeaders())
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * @return true if the connection can be used for the next request
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    /**
+     * @return the body of a response that is not sent to a client
+     */
+    byte[] bufferedBody() {
+        return buffer == null ? null : buffer.toByteArray();
+    }
+
+    /**
+     * @param status
+     * @return the status and its reason, like "404 Not Found"
+     */
+    static String statusLine(int status) {
+        return status + " " + reasonPhrase(status);
+    }
+
+    private String statusLine() {
+        return statusLine(status);
+    }
+
+    private static String reasonPhrase(int status) {
+        switch (status) {
+            case 200: return "OK";
+            case 201: return "Created";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 206: return "Partial Content";
+            case 301: return "Moved Permanently";
+            case 302: return "Found";
+            case 303: return "See Other";
+            case 304: return "Not Modified";
+            case 307: return "Temporary Redirect";
+            case 308: return "Permanent Redirect";
+            case 400: return "Bad Request";
+            case 401: return "Unauthorized";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 409: return "Conflict";
+            case 413: return "Payload Too Large";
+            case 415: return "Unsupported Media Type";
+            case 416: return "Range Not Satisfiable";
+            case 422: return "Unprocessable Content";
+            case 429: return "Too Many Requests";
+            case 500: return "Internal Server Error";
+            case 501: return "Not Implemented";
+            case 502: return "Bad Gateway";
+            case 503: return "Service Unavailable";
+            case 504: return "Gateway Timeout";
+            default: return status < 400 ? "OK" : "Error";
+        }
+    }
+
+    private String contentType() {
+        String contentType = headers.get("Content-Type");
+        return contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
+    }
+
+    /**
+     * The headers set by the service except the ones that the server writes
+     */
+    private String extraHeaders() {
+        StringBuilder extra = new StringBuilder();
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            String name = header.getKey();
+            if (!name.equalsIgnoreCase("Content-Type") && !name.equalsIgnoreCase("Content-Length")
+                    && !name.equalsIgnoreCase("Transfer-Encoding") && !name.equalsIgnoreCase("Connection")) {
+                extra.append(name).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        return extra.toString();
+    }
+
+    /**
+     * @return true if the service asked to close the connection
+     */
+    boolean closeRequested() {
+        String value = headers.get("Connection");
+        return value != null && value.toLowerCase(Locale.ROOT).contains("close");
+    }
+
+    private void checkNotCommitted() {
+        if (isCommitted()) {
+            throw new IllegalStateException("The headers were already sent");
+        }
+    }
+
+    private static boolean isHeaderText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            // CR o LF permitirian inyectar headers en la respuesta
+            if (c == '\r' || c == '\n' || c > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stream of the body that sends the headers before the first byte
+     */
+    private final class BodyOutputStream extends OutputStream {
+
+        OutputStream target;
+        long contentLength = -1;
+        long written;
+        boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Response body already closed");
+            }
+            start();
+            if (contentLength >= 0 && written + len > contentLength) {
+                throw new IOException("Response body larger than its Content-Length " + contentLength);
+            }
+            target.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!closed) {
+                start();
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            start();
+            closed = true;
+            if (target instanceof ChunkedOutputStream) {
+                ((ChunkedOutputStream) target).finish();
+            } else if (contentLength >= 0 && written != contentLength) {
+                throw new IOException("Response body shorter than its Content-Length " + contentLength);
+            }
+        }
+
+        /**
+         * Send the headers and choose how the end of the body is marked
+         */
+        private void start() throws IOException {
+            if (target != null) {
+                return;
+            }
+            if (connection == null) {
+                target = buffer;
+                return;
+            }
+            String declared = headers.get("Content-Length");
+            if (declared != null) {
+                try {
+                    contentLength = Long.parseLong(declared.trim());
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid Content-Length " + declared);
+                }
+            }
+            keepAlive = keepAlive && !closeRequested();
+            String extra = extraHeaders();
+            if (contentLength < 0) {
+                if (chunkedAllowed) {
+                    extra += "Transfer-Encoding: chunked\r\n";
+                } else {
+                    // Sin tamaño ni chunked el cliente encuentra el final cuando se cierra la conexion
+                    keepAlive = false;
+                }
+            }
+            connection.write(HttpServer.headers(statusLine(), contentType(), contentLength, keepAlive, extra)
+                    .getBytes(StandardCharsets.US_ASCII));
+            target = contentLength < 0 && chunkedAllowed ? new ChunkedOutputStream(connection, CHUNK_SIZE) : connection;
+        }
+    }
 }
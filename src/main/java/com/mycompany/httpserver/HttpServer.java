@@ -2,16 +2,104 @@ package com.mycompany.httpserver;
 
 import java.net.*;
 import java.io.*;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
 
 public class HttpServer {
 
-    private static final int PORT = 35000;
+    private static int port = 35000;
+    private static int listeners = 1;
+    private static volatile AtomicLongArray listenerConnections = new AtomicLongArray(1);
     private static String basePath = "src/main/java/resources/";
 
-    public static Map<String, Service> services = new HashMap<String, Service>();
+    // Ultimo servicio de cada ruta sin importar el metodo, se escribe al registrar rutas desde cualquier hilo
+    public static Map<String, Service> services = new ConcurrentHashMap<String, Service>();
+    // Una tabla de rutas por metodo, HEAD usa la de GET
+    // Se pueden registrar rutas mientras el servidor atiende solicitudes
+    private static final Map<String, Router> routers = new ConcurrentSkipListMap<String, Router>();
+
+    private static boolean virtualThreads = false;
+    private static int maxConnections = 10_000;
+    private static final AtomicInteger activeHandlers = new AtomicInteger();
+
+    private static final long DEFAULT_ASYNC_TIMEOUT = 30_000;
+
+    private static final int MAX_BODY_DRAIN = 64 * 1024;
+    private static long maxBodySize = 10 * 1024 * 1024;
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter
+            .ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+    // Se lee en cada archivo estatico sin bloquear, cacheControl publica una copia nueva
+    private static volatile Map<String, String> cacheControls = Map.of();
+    private static final Map<String, RateLimiter> rateLimits = new HashMap<String, RateLimiter>();
+
+    private static StaticFileCache staticFileCache = new StaticFileCache(32 * 1024 * 1024, 1000);
+    private static ResponseCache responseCache = new ResponseCache(1000, 8 * 1024 * 1024);
+
+    private static int keepAliveTimeout = 5000;
+    private static int maxKeepAliveRequests = 100;
+
+    private static int headerReadTimeout = 10_000;
+    private static int bodyReadTimeout = 30_000;
+    private static int writeTimeout = 30_000;
+    private static final LongAdder[] timeouts = new LongAdder[TimeoutType.values().length];
+
+    static {
+        for (int i = 0; i < timeouts.length; i++) {
+            timeouts[i] = new LongAdder();
+        }
+    }
+
+    // Una rueda para todas las conexiones del motor bloqueante
+    static final long TIMER_TICK_MILLIS = 100;
+    static final int TIMER_SLOTS = 512;
+
+    private static final Metrics metrics = new Metrics();
+    // null cuando las metricas no se publican
+    private static volatile String metricsPath = "/metrics";
+
+    // Grabacion de Flight Recorder que se descarga desde recordingPath
+    private static volatile Recording recording;
+    private static volatile String recordingPath;
+
+    // null sin registro de accesos
+    private static volatile AccessLogger accessLogger;
+    private static final int ACCESS_LOG_CAPACITY = 16 * 1024;
+
+    private static final int RETRY_AFTER_SECONDS = 1;
+    private static volatile WorkerPool workerPool;
+
+    private static boolean nioEngine = false;
+    private static int reactorThreads = Runtime.getRuntime().availableProcessors();
 
     /**
      * The main method to create the http server
@@ -21,279 +109,1945 @@ public class HttpServer {
      * @throws URISyntaxException
      */
     public static void startServer(String[] args) throws IOException, URISyntaxException {
-        ServerSocket serverSocket = null;
+        if (nioEngine) {
+            ServerSocketChannel[] serverSockets = openListeners(port, listeners);
+            listenerConnections = new AtomicLongArray(serverSockets.length);
+            new NioServer(serverSockets, reactorThreads, keepAliveTimeout, maxKeepAliveRequests).start();
+            return;
+        }
+
+        // Se abre como canal para que cada conexion tenga un SocketChannel y
+        // los archivos se puedan enviar con transferTo
+        ServerSocketChannel[] serverSockets = null;
         try {
-            serverSocket = new ServerSocket(PORT);
+            serverSockets = openListeners(port, listeners);
         } catch (IOException e) {
-            System.err.println("Could not listen on port: " + PORT + ".");
+            System.err.println("Could not listen on port: " + port + ".");
             System.exit(1);
         }
-        Socket clientSocket = null;
+        listenerConnections = new AtomicLongArray(serverSockets.length);
+
+        // Un hilo virtual por conexion cuando el modo esta activo
+        ExecutorService connectionExecutor = virtualThreads ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        Semaphore connectionPermits = new Semaphore(maxConnections);
+        TimingWheel timers = new TimingWheel(TIMER_TICK_MILLIS, TIMER_SLOTS);
+        timers.start("connection-timeouts");
+
+        // Cada listener tiene su propio hilo de accept, el primero es el hilo que llamo a startServer
+        for (int i = 1; i < serverSockets.length; i++) {
+            ServerSocketChannel serverSocket = serverSockets[i];
+            int listener = i;
+            Thread acceptor = new Thread(() -> acceptConnections(serverSocket, listener, connectionExecutor, connectionPermits, timers),
+                    "http-listener-" + i);
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+        acceptConnections(serverSockets[0], 0, connectionExecutor, connectionPermits, timers);
+
+        if (connectionExecutor != null) {
+            connectionExecutor.shutdown();
+        }
+        for (ServerSocketChannel serverSocket : serverSockets) {
+            serverSocket.close();
+        }
+    }
 
+    /**
+     * Accept the connections of one listener until its channel is closed
+     *
+     * @param serverSocket
+     * @param listener index of the listener, for its connection count
+     * @param connectionExecutor virtual threads, null to handle each
+     * connection in the accept loop
+     * @param connectionPermits limit of the connections handled at once
+     * @param timers
+     */
+    private static void acceptConnections(ServerSocketChannel serverSocket, int listener, ExecutorService connectionExecutor,
+            Semaphore connectionPermits, TimingWheel timers) {
         boolean running = true;
 
         // Recibe más de una solicitud
         while (running) {
+            Socket clientSocket = null;
+
+            if (connectionExecutor != null) {
+                // No aceptar mas conexiones de las permitidas, el resto espera en el backlog
+                connectionPermits.acquireUninterruptibly();
+            }
 
             try {
                 // Acepta la solicitd del cliente 
-                System.out.println("Listo para recibir ...");
-                clientSocket = serverSocket.accept();
+                debug("Listo para recibir ...");
+                clientSocket = serverSocket.accept().socket();
+            } catch (ClosedChannelException e) {
+                // Interrumpir el hilo del servidor o cerrar el canal detiene el listener
+                break;
             } catch (IOException e) {
                 System.err.println("Accept failed.");
                 System.exit(1);
             }
+            accepted(listener);
+            HttpEvents.Accept acceptEvent = HttpEvents.startAccept();
 
-            // create the IO streams
-            PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(
-                            clientSocket.getInputStream()));
-            String inputLine;
-
-            boolean isFirstLine = true;
-            URI requestUri = null;
-
-            while ((inputLine = in.readLine()) != null) {
-
-                if (isFirstLine) {
-                    // get the URI
-                    requestUri = new URI(inputLine.split(" ")[1]);
-                    System.out.println("Path: " + requestUri.getPath());
-                    isFirstLine = false;
-                }
-                System.out.println("Received: " + inputLine);
-                if (!in.ready()) {
-                    break;
-                }
+            if (connectionExecutor == null) {
+                // Sin concurrencia una conexion ociosa bloquearia a los demas clientes
+                HttpEvents.accepted(acceptEvent, listener);
+                handleConnection(clientSocket, false, timers);
+                continue;
             }
 
-            handlerequestType(requestUri, out, clientSocket.getOutputStream());
+            final Socket connection = clientSocket;
+            connectionExecutor.execute(() -> {
+                HttpEvents.accepted(acceptEvent, listener);
+                activeHandlers.incrementAndGet();
+                try {
+                    handleConnection(connection, true, timers);
+                } finally {
+                    activeHandlers.decrementAndGet();
+                    connectionPermits.release();
+                }
+            });
+        }
+    }
 
-            out.close();
-            in.close();
-            clientSocket.close();
+    /**
+     * Open the listening channels. More than one listener share the port
+     * with SO_REUSEPORT and the kernel spreads the new connections among
+     * them
+     *
+     * @param port 0 to use any free port
+     * @param count number of listeners, only one is opened if the platform
+     * does not support SO_REUSEPORT
+     * @return the bound channels
+     * @throws IOException if the port can not be bound
+     */
+    static ServerSocketChannel[] openListeners(int port, int count) throws IOException {
+        if (count > 1 && !reusePortSupported()) {
+            System.err.println("SO_REUSEPORT is not supported, using one listener.");
+            count = 1;
+        }
+        ServerSocketChannel[] channels = new ServerSocketChannel[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                channels[i] = ServerSocketChannel.open();
+                if (count > 1) {
+                    channels[i].setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                }
+                channels[i].bind(new InetSocketAddress(port));
+                // Con el puerto 0 los demas listeners usan el que eligio el primero
+                port = ((InetSocketAddress) channels[i].getLocalAddress()).getPort();
+            }
+        } catch (IOException | RuntimeException e) {
+            for (ServerSocketChannel channel : channels) {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+            throw e;
+        }
+        return channels;
+    }
 
+    private static boolean reusePortSupported() {
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+        } catch (IOException e) {
+            return false;
         }
-        serverSocket.close();
+    }
+
+    static void accepted(int listener) {
+        listenerConnections.incrementAndGet(listener);
     }
 
     /**
-     * This method handle the request and its response by reading its file type
+     * Read the requests of one client in order and answer them on the same
+     * socket until the client or the keep-alive limits close the connection
      *
-     * @param requestUri
-     * @param out
-     * @param outputStream
-     */
-    private static void handlerequestType(URI requestUri, PrintWriter out, OutputStream outputStream) {
-        if (requestUri.getPath().endsWith(".html") || requestUri.getPath().equalsIgnoreCase("/")) {
-            getHTML(requestUri, out);
-        } else if (requestUri.getPath().endsWith(".css")) {
-            getCSS(requestUri, out);
-        } else if (requestUri.getPath().endsWith(".js")) {
-            getJS(requestUri, out);
-        } else if (requestUri.getPath().startsWith("/app")) {
-            processRequest(requestUri, out);
-        } else if (requestUri.getPath().endsWith(".jpeg") || requestUri.getPath().endsWith(".jpg")
-                || requestUri.getPath().endsWith(".png") || requestUri.getPath().endsWith(".ico")) {
+     * @param clientSocket
+     * @param allowKeepAlive false to close the connection after the first
+     * response
+     * @param timers wheel of the read and write deadlines
+     */
+    private static void handleConnection(Socket clientSocket, boolean allowKeepAlive, TimingWheel timers) {
+        ConnectionTimer timer = new ConnectionTimer(timers, type -> {
             try {
-                getImage(requestUri, outputStream);
+                if (type == TimeoutType.WRITE) {
+                    // El cliente no lee, se descarta lo que queda en el buffer del socket
+                    clientSocket.setSoLinger(true, 0);
+                }
+                clientSocket.close();
+            } catch (IOException ex) {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        }, true);
+        try {
+            // create the IO streams
+            OutputStream out = new ChannelOutputStream(timer.output(clientSocket.getOutputStream()), clientSocket.getChannel(), timer);
+            RequestReader in = new RequestReader(timer.input(clientSocket.getInputStream()));
+            HttpRequest request = new HttpRequest();
+            request.setRemoteAddress(clientSocket.getInetAddress().getHostAddress());
+
+            int served = 0;
+            boolean keepAlive = true;
+            while (keepAlive) {
+                // Cerrar la conexion desbloquea la lectura cuando vence el plazo
+                timer.expect(TimeoutType.IDLE, keepAliveTimeout);
+                try {
+                    if (!in.readHeaders(request)) {
+                        break;
+                    }
+                } catch (HttpParseException e) {
+                    sendError(out, e.getStatus(), e.getReason());
+                    out.flush();
+                    break;
+                }
+                debugRequest(request);
+                timer.expect(TimeoutType.BODY_READ, bodyReadTimeout);
+
+                InputStream body;
+                try {
+                    body = requestBody(request, in.stream());
+                } catch (HttpParseException e) {
+                    sendError(out, e.getStatus(), e.getReason());
+                    out.flush();
+                    break;
+                }
+
+                served++;
+                keepAlive = allowKeepAlive && served < maxKeepAliveRequests && isKeepAlive(request);
+
+                keepAlive = handleRequest(request, out, keepAlive);
+                out.flush();
+
+                // Descartar lo que el servicio no leyo para llegar a la siguiente solicitud
+                keepAlive = keepAlive && drainBody(body);
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (!timer.isExpired()) {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        } finally {
+            timer.stop();
+            try {
+                clientSocket.close();
             } catch (IOException ex) {
                 System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
             }
-        } else {
-            notFound(out);
         }
     }
 
     /**
-     * handle html responses
+     * Create the stream of the request body from its Content-Length or
+     * Transfer-Encoding headers
      *
-     * @param requestUri
-     * @param out
+     * @param request
+     * @param connection bytes of the connection after the headers
+     * @return the body stream, also set in the request
+     * @throws HttpParseException 400 if the length is not valid, 413 if it is
+     * larger than the limit
      */
-    private static void getHTML(URI requestUri, PrintWriter out) {
-        String outputLine = "HTTP/1.1 200 OK\n\r"
-                + "contente-type: text/html\n\r"
-                + "\n\r";
-
-        // create the file path
-        String file = requestUri.getPath().equalsIgnoreCase("/") ? basePath + "index.html" : basePath + requestUri.getPath();
-
-        File realFile = new File(file);
-        if (!realFile.exists()) {
-            notFound(out);
-            return;
+    static InputStream requestBody(HttpRequest request, InputStream connection) throws HttpParseException {
+        InputStream body;
+        if (request.isChunked()) {
+            body = new ChunkedInputStream(connection, maxBodySize);
+            request.setBody(body, -1);
+            return body;
+        }
+        long contentLength;
+        try {
+            contentLength = request.getLongHeader("Content-Length");
+        } catch (NumberFormatException e) {
+            throw new HttpParseException(400, "Bad Request");
         }
+        if (contentLength > maxBodySize) {
+            throw new HttpParseException(413, "Payload Too Large");
+        }
+        body = contentLength > 0 ? new ContentLengthInputStream(connection, contentLength) : InputStream.nullInputStream();
+        request.setBody(body, Math.max(contentLength, 0));
+        return body;
+    }
 
-        // start reading the file
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = reader.readLine()) != null) {
-                outputLine += fileLine + "\n";
+    /**
+     * Read and discard the rest of a body
+     *
+     * @param body
+     * @return true if the body ended, false if it was larger than the drain
+     * limit and the connection must be closed
+     */
+    private static boolean drainBody(InputStream body) {
+        try {
+            long drained = 0;
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) >= 0) {
+                drained += read;
+                if (drained > MAX_BODY_DRAIN) {
+                    return false;
+                }
             }
+            return true;
         } catch (IOException e) {
-            e.printStackTrace();
+            return false;
         }
+    }
 
-        out.write(outputLine);
+    /**
+     * Decide if the connection stays open after the response. HTTP/1.1 keeps
+     * it open unless the client sends "Connection: close", HTTP/1.0 only if
+     * the client asks for keep-alive
+     *
+     * @param request
+     * @return true to keep the connection open
+     */
+    static boolean isKeepAlive(HttpRequest request) {
+        if (request.headerContains("Connection", "close")) {
+            return false;
+        }
+        return request.isHttp11() || request.headerContains("Connection", "keep-alive");
     }
 
     /**
-     * hanlde css responses
+     * Handle a request of a blocking connection in the worker pool when it is
+     * configured, the connection thread waits for the response
      *
-     * @param requestUri
+     * @param request
      * @param out
+     * @param keepAlive
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
      */
-    private static void getCSS(URI requestUri, PrintWriter out) {
-        String outputLine = "HTTP/1.1 200 OK\n\r"
-                + "contente-type: text/css\n\r"
-                + "\n\r";
+    private static boolean handleRequest(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        WorkerPool pool = workerPool;
+        if (pool == null) {
+            return handlerequestType(request, out, keepAlive);
+        }
+        CompletableFuture<Boolean> handled = pool.submit(() -> handlerequestType(request, out, keepAlive, null),
+                () -> sendOverloaded(out));
+        if (handled == null) {
+            return sendOverloaded(out);
+        }
+        try {
+            return handled.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-        String file = basePath + requestUri.getPath();
+    /**
+     * answer a request that was shed because the server is overloaded. The
+     * connection is closed to free its resources
+     *
+     * @param out
+     * @return false, the connection must be closed
+     * @throws IOException
+     */
+    static boolean sendOverloaded(OutputStream out) throws IOException {
+        writeResponse(out, "503 Service Unavailable", "text/plain", "Retry-After: " + RETRY_AFTER_SECONDS + "\r\n",
+                "503 Service Unavailable".getBytes(StandardCharsets.UTF_8), false);
+        return false;
+    }
 
-        File realFile = new File(file);
-        if (!realFile.exists()) {
-            notFound(out);
-            return;
-        }
+    /**
+     * This method handle the request and its response by reading its file type
+     *
+     * @param request
+     * @param out
+     * @param keepAlive true if the connection stays open after the response
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
+     */
+    static boolean handlerequestType(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        return handlerequestType(request, out, keepAlive, out instanceof DeferredOutput ? (DeferredOutput) out : null);
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = reader.readLine()) != null) {
-                outputLine += fileLine + "\n";
+    /**
+     * This method handle the request and its response by reading its file type
+     *
+     * @param request
+     * @param out
+     * @param keepAlive true if the connection stays open after the response
+     * @param deferred lets the engine run a service in another thread and
+     * write its response later, null to run it in this thread
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
+     */
+    static boolean handlerequestType(HttpRequest request, OutputStream out, boolean keepAlive, DeferredOutput deferred) throws IOException {
+        if (deferred != null) {
+            // Leer, hashear y comprimir un archivo que no esta en la cache no se hace en el hilo del motor
+            String file = staticFileName(request.getPath());
+            if (file != null && !isStaticFileFresh(file)) {
+                OutputStream target = out;
+                deferred.dispatch(() -> handlerequestType(request, target, keepAlive, null));
+                return keepAlive;
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
+        // HEAD produce la misma respuesta que GET pero sin enviar el cuerpo
+        if (request.getMethod().equals("HEAD")) {
+            out = new HeadOutputStream(out);
+        }
+        long start = System.nanoTime();
+        request.event = HttpEvents.startRequest();
+        String path = request.getPath();
+        int status;
+        RequestMetrics handler;
+        if (path.endsWith(".html") || path.equalsIgnoreCase("/")) {
+            status = getHTML(request, out, keepAlive);
+            handler = metrics.staticFile(Metrics.HTML);
+        } else if (path.endsWith(".css")) {
+            status = getCSS(request, out, keepAlive);
+            handler = metrics.staticFile(Metrics.CSS);
+        } else if (path.endsWith(".js")) {
+            status = getJS(request, out, keepAlive);
+            handler = metrics.staticFile(Metrics.JAVASCRIPT);
+        } else if (path.startsWith("/app")) {
+            return processRequest(request, out, keepAlive, deferred);
+        } else if (path.endsWith(".jpeg") || path.endsWith(".jpg")
+                || path.endsWith(".png") || path.endsWith(".ico")) {
+            status = getImage(request, out, keepAlive);
+            handler = metrics.staticFile(Metrics.IMAGE);
+        } else if (path.equals(metricsPath)) {
+            status = sendMetrics(out, keepAlive);
+            handler = metrics.admin();
+        } else if (path.equals(recordingPath)) {
+            status = sendRecording(request, out, keepAlive);
+            handler = metrics.admin();
+        } else {
+            notFound(out, keepAlive);
+            status = 404;
+            handler = metrics.notFound();
+        }
+        completed(handler, request, status, start);
+        return keepAlive;
+    }
+
+    /**
+     * handle html responses
+     *
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int getHTML(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        return getStaticFile(request, staticFileName(request.getPath()), "text/html", out, keepAlive);
+    }
 
-        out.write(outputLine);
+    /**
+     * hanlde css responses
+     *
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int getCSS(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        return getStaticFile(request, request.getPath(), "text/css", out, keepAlive);
     }
 
     /**
      * handle javascript responses
      *
-     * @param requestUri
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int getJS(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        return getStaticFile(request, request.getPath(), "text/javascript", out, keepAlive);
+    }
+
+    /**
+     * send a file of the static files directory, from the cache when it is
+     * there. A Range header is answered with only the parts of the file it
+     * asks for
+     *
+     * @param request
+     * @param file path of the file inside basePath
+     * @param contentType
      * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int getStaticFile(HttpRequest request, String file, String contentType, OutputStream out, boolean keepAlive) throws IOException {
+        HttpEvents.StaticFile event = new HttpEvents.StaticFile();
+        event.begin();
+        int status = sendStaticFile(request, file, contentType, out, keepAlive);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = file;
+            event.status = status;
+            event.commit();
+        }
+        return status;
+    }
+
+    /**
+     * file of a static path, in the same order handlerequestType picks the
+     * handler of the path
+     *
+     * @param path
+     * @return the file inside basePath or null if the path is not a static
+     * file
      */
-    private static void getJS(URI requestUri, PrintWriter out) {
-        String outputLine = "HTTP/1.1 200 OK\n\r"
-                + "contente-type: text/javascript\n\r"
-                + "\n\r";
+    private static String staticFileName(String path) {
+        if (path.equalsIgnoreCase("/")) {
+            return "index.html";
+        }
+        if (path.endsWith(".html") || path.endsWith(".css") || path.endsWith(".js")) {
+            return path;
+        }
+        if (!path.startsWith("/app") && (path.endsWith(".jpeg") || path.endsWith(".jpg")
+                || path.endsWith(".png") || path.endsWith(".ico"))) {
+            return path.startsWith("/images/") ? path : "images/" + path;
+        }
+        return null;
+    }
 
-        String file = basePath + requestUri.getPath();
+    /**
+     * @param file path of the file inside basePath
+     * @return the file on disk or null if it is outside the static files
+     * directory
+     */
+    private static Path resolveStaticFile(String file) {
+        // No se permite salir del directorio de archivos estaticos
+        Path root = Paths.get(basePath).toAbsolutePath().normalize();
+        Path realFile = root.resolve(file.startsWith("/") ? file.substring(1) : file).normalize();
+        return realFile.startsWith(root) ? realFile : null;
+    }
 
-        File realFile = new File(file);
-        if (!realFile.exists()) {
-            notFound(out);
-            return;
+    /**
+     * @param file path of the file inside basePath
+     * @return true if the file can be sent from the cache without touching
+     * the disk
+     */
+    private static boolean isStaticFileFresh(String file) {
+        Path realFile = resolveStaticFile(file);
+        return realFile != null && staticFileCache.isFresh(realFile, cacheControlFor(file.startsWith("/") ? file : "/" + file));
+    }
+
+    private static int sendStaticFile(HttpRequest request, String file, String contentType, OutputStream out, boolean keepAlive) throws IOException {
+        String method = request.getMethod();
+        if (!method.equals("GET") && !method.equals("HEAD")) {
+            methodNotAllowed(out, "GET, HEAD", keepAlive);
+            return 405;
+        }
+
+        Path realFile = resolveStaticFile(file);
+        String cacheControl = cacheControlFor(file.startsWith("/") ? file : "/" + file);
+        StaticFileCache.Entry entry = realFile != null ? staticFileCache.get(realFile, contentType, cacheControl) : null;
+        if (entry == null) {
+            notFound(out, keepAlive);
+            return 404;
+        }
+
+        // Los archivos de texto se envian comprimidos si el cliente lo acepta
+        StaticFileCache.Variant variant = entry.encoded(ContentEncoding.negotiate(request.getHeader("Accept-Encoding")));
+
+        // Si el cliente ya tiene esta version del archivo no se envia el cuerpo
+        if (isNotModified(request, entry, variant != null ? variant : entry.identity)) {
+            out.write((variant != null ? variant : entry.identity).notModified(keepAlive));
+            return 304;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String fileLine;
-            while ((fileLine = reader.readLine()) != null) {
-                outputLine += fileLine + "\n";
+        String range = request.getHeader("Range");
+        if (range != null && ifRangeMatches(request, entry)) {
+            List<ByteRange> ranges = ByteRange.parse(range, entry.length);
+            if (ranges != null) {
+                return sendRanges(entry, ranges, out, keepAlive);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
 
-        out.write(outputLine);
+        if (variant != null) {
+            out.write(variant.header(keepAlive));
+            out.write(variant.body);
+            return 200;
+        }
+
+        out.write(entry.header(keepAlive));
+        sendFileBytes(entry, 0, entry.length, out);
+        return 200;
     }
 
     /**
-     * handle the rest app
+     * Check the If-None-Match and If-Modified-Since headers of the request,
+     * If-None-Match wins when both are sent
      *
-     * @param requestUri
-     * @param out
+     * @param request
+     * @param entry
+     * @param variant the version of the file that would be sent
+     * @return true to answer 304 Not Modified
      */
-    private static void processRequest(URI requestUri, PrintWriter out) {
+    private static boolean isNotModified(HttpRequest request, StaticFileCache.Entry entry, StaticFileCache.Variant variant) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etagMatches(ifNoneMatch, variant.etag);
+        }
+        String ifModifiedSince = request.getHeader("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            long since = parseHttpDate(ifModifiedSince);
+            // Last-Modified solo tiene precision de segundos
+            return since >= 0 && entry.lastModified / 1000 * 1000 <= since;
+        }
+        return false;
+    }
 
-        String serviceRoute = requestUri.getPath().substring(4);
-        Service service = services.get(serviceRoute);
+    /**
+     * Weak comparison of a list of ETags, like the one of If-None-Match
+     *
+     * @param header
+     * @param etag
+     * @return true if the list is "*" or contains the ETag
+     */
+    private static boolean etagMatches(String header, String etag) {
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        if (service == null) {
-            notFound(out);
-            return;
+    /**
+     * A range is only sent if the file did not change since the client got
+     * its first part, otherwise the whole file is sent again
+     *
+     * @param request
+     * @param entry
+     * @return true if the request has no If-Range or it matches the ETag or
+     * the date of the file
+     */
+    private static boolean ifRangeMatches(HttpRequest request, StaticFileCache.Entry entry) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        // Un ETag debe coincidir exactamente, los ETag debiles nunca coinciden
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(entry.identity.etag);
         }
+        return ifRange.equals(entry.lastModifiedDate);
+    }
 
-        HttpRequest req = new HttpRequest(requestUri);
-        HttpResponse res = new HttpResponse();
+    /**
+     * send the 206 response of a Range request, as multipart/byteranges when
+     * it asks for more than one range, or 416 if no range is inside the file
+     *
+     * @param entry
+     * @param ranges
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int sendRanges(StaticFileCache.Entry entry, List<ByteRange> ranges, OutputStream out, boolean keepAlive) throws IOException {
+        if (ranges.isEmpty()) {
+            writeResponse(out, "416 Range Not Satisfiable", "text/plain", "Content-Range: bytes */" + entry.length + "\r\n",
+                    "416 Range Not Satisfiable".getBytes(StandardCharsets.UTF_8), keepAlive);
+            return 416;
+        }
 
-        String header = "HTTP/1.1 200 OK\n\r"
-                + "contente-type: application/json\n\r"
-                + "\n\r";
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            writeHeaders(out, "206 Partial Content", entry.contentType, range.length(), keepAlive,
+                    entry.identity.extraHeaders + "Content-Range: bytes " + range.first + "-" + range.last + "/" + entry.length + "\r\n");
+            sendFileBytes(entry, range.first, range.length(), out);
+            return 206;
+        }
 
-        out.write(header + service.executeService(req, res));
+        // Cada parte lleva sus headers, el Content-Length se calcula antes de enviarlas
+        String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        byte[][] partHeaders = new byte[ranges.size()][];
+        byte[] closeDelimiter = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        long contentLength = closeDelimiter.length;
+        for (int i = 0; i < partHeaders.length; i++) {
+            ByteRange range = ranges.get(i);
+            partHeaders[i] = ("\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + entry.contentType + "\r\n"
+                    + "Content-Range: bytes " + range.first + "-" + range.last + "/" + entry.length + "\r\n"
+                    + "\r\n").getBytes(StandardCharsets.US_ASCII);
+            contentLength += partHeaders[i].length + range.length();
+        }
 
+        writeHeaders(out, "206 Partial Content", "multipart/byteranges; boundary=" + boundary, contentLength, keepAlive, entry.identity.extraHeaders);
+        for (int i = 0; i < partHeaders.length; i++) {
+            out.write(partHeaders[i]);
+            sendFileBytes(entry, ranges.get(i).first, ranges.get(i).length(), out);
+        }
+        out.write(closeDelimiter);
+        return 206;
     }
 
     /**
-     * handle image response
+     * send a part of a static file, from memory if it is cached or from the
+     * disk
      *
-     * @param requestUri
+     * @param entry
+     * @param position
+     * @param count
      * @param out
      * @throws IOException
      */
-    private static void getImage(URI requestUri, OutputStream out) throws IOException {
-        String path = requestUri.getPath();
-        //File extension
-        String fileExtension = path.substring(path.lastIndexOf(".") + 1).toLowerCase();
+    private static void sendFileBytes(StaticFileCache.Entry entry, long position, long count, OutputStream out) throws IOException {
+        if (entry.body != null) {
+            out.write(entry.body, (int) position, (int) count);
+            return;
+        }
+        // Los archivos que no caben en la cache los envia el kernel sin pasar por el heap
+        if (out instanceof FileTransferOutput) {
+            ((FileTransferOutput) out).transferFile(entry.file, position, count);
+            return;
+        }
+        try (InputStream fileInputStream = Files.newInputStream(entry.file)) {
+            fileInputStream.skipNBytes(position);
+            new ContentLengthInputStream(fileInputStream, count).transferTo(out);
+        }
+    }
 
-        String file = path.startsWith("/images/") ? basePath + path : basePath + "images/" + path;
+    /**
+     * handle the rest app. The service writes its status, headers and body
+     * in the HttpResponse, or returns the body as a String
+     *
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @param deferred lets an engine run a synchronous service in another
+     * thread and write the response of an asynchronous one when it completes,
+     * null to do both in this thread
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
+     */
+    private static boolean processRequest(HttpRequest request, OutputStream out, boolean keepAlive, DeferredOutput deferred) throws IOException {
+        long start = System.nanoTime();
 
-        File realFile = new File(file);
+        // La ruta del servicio empieza despues de "/app"
+        HttpEvents.Routing routing = new HttpEvents.Routing();
+        routing.begin();
+        Router.Route route = matchRoute(request.getMethod(), request.getPath(), request);
+        routing.end();
+        if (routing.shouldCommit()) {
+            routing.path = request.getPath();
+            routing.handler = route == null ? null : route.pattern;
+            routing.commit();
+        }
 
-        if (!realFile.exists()) {
-            PrintWriter outPrint = new PrintWriter(out, true);
-            notFound(outPrint);
-            return;
+        if (route == null) {
+            String allow = allowedMethods(request.getPath());
+            if (allow == null) {
+                notFound(out, keepAlive);
+                completed(metrics.notFound(), request, 404, start);
+            } else {
+                methodNotAllowed(out, allow, keepAlive);
+                completed(metrics.notFound(), request, 405, start);
+            }
+            return keepAlive;
         }
+        Service service = route.service;
+        RequestMetrics routeMetrics = route.metrics;
 
-        //response header
-        String outputLine = "HTTP/1.1 200 OK\r\n"
-                + "Content-Type: image/" + fileExtension + "\r\n"
-                + "Content-Length: " + realFile.length() + "\r\n"
-                + "\r\n";
+        // Sin limite configurado esto es solo la lectura de un campo
+        RateLimiter limiter = route.rateLimiter;
+        if (limiter != null) {
+            long wait = limiter.acquire(request.getRemoteAddress(), start);
+            if (wait > 0) {
+                tooManyRequests(out, limiter, wait, keepAlive);
+                completed(routeMetrics, request, 429, start);
+                return keepAlive;
+            }
+        }
 
-        try {
-            //Write headers as a text
-            out.write(outputLine.getBytes("UTF-8"));
-        } catch (UnsupportedEncodingException ex) {
-            System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+        if (route.cacheTtlMillis > 0) {
+            return processCachedRequest(route, request, out, keepAlive, start, deferred);
         }
 
-        //write content binary of image
-        try (FileInputStream fileInputStream = new FileInputStream(realFile); BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream)) {
+        HttpResponse res = new HttpResponse(out, keepAlive, request.isHttp11());
 
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = bufferedInputStream.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
+        if (route.asyncService != null) {
+            CompletableFuture<String> result = executeAsync(route, request, res);
+            if (deferred != null && !result.isDone()) {
+                deferred.defer(result, () -> {
+                    try {
+                        boolean open = finishAsync(result, res);
+                        completed(routeMetrics, request, res.getStatus(), start);
+                        return open;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                return keepAlive;
             }
+            // Sin un motor que pueda diferir la respuesta el hilo de la
+            // conexion espera, con hilos virtuales no ocupa un hilo del sistema
+            boolean open = finishAsync(result, res);
+            completed(routeMetrics, request, res.getStatus(), start);
+            return open;
         }
-        out.flush();
+
+        if (deferred != null) {
+            // El motor NIO no corre el servicio en el reactor, su cuerpo sale
+            // al socket mientras lo escribe
+            deferred.dispatch(() -> respond(route, request, res, start));
+            return keepAlive;
+        }
+        return respond(route, request, res, start);
     }
 
     /**
-     * handle not found response
+     * run a synchronous service and write its response, a service that fails
+     * before sending its headers is answered with a 500
      *
-     * @param out
+     * @param route
+     * @param request
+     * @param res
+     * @param start System.nanoTime() when the request started
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
      */
-    private static void notFound(PrintWriter out) {
-        String response = "HTTP/1.1 404 Not Found\r\n"
-                + "Content-Type: text/plain\r\n"
-                + "\r\n"
-                + "404 Not Found";
-        out.write(response);
+    private static boolean respond(Router.Route route, HttpRequest request, HttpResponse res, long start) throws IOException {
+        String body;
+        try {
+            body = runService(route, request, res);
+        } catch (RuntimeException e) {
+            System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, e);
+            if (res.isCommitted()) {
+                // Los headers ya se enviaron, al cerrar la conexion el cliente sabe que el cuerpo quedo incompleto
+                completed(route.metrics, request, res.getStatus(), start);
+                return false;
+            }
+            res.sendError(500);
+            completed(route.metrics, request, 500, start);
+            return res.isKeepAlive();
+        }
+        res.finish(body);
+        completed(route.metrics, request, res.getStatus(), start);
+        return res.isKeepAlive();
     }
 
-    public static void get(String route, Service s) {
-        services.put(route, s);
+    /**
+     * record a request that was answered in the metrics of its handler and
+     * in the access log
+     *
+     * @param handler null if the route was registered outside the server
+     * @param request
+     * @param status
+     * @param start System.nanoTime() when the request started
+     */
+    private static void completed(RequestMetrics handler, HttpRequest request, int status, long start) {
+        long nanos = System.nanoTime() - start;
+        if (handler != null) {
+            handler.record(status, nanos);
+        }
+        HttpEvents.Request event = request.event;
+        if (event != null) {
+            request.event = null;
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = request.getMethod();
+                event.path = request.getPath();
+                event.handler = handler == null ? null : handler.getName();
+                event.status = status;
+                event.remoteAddress = request.getRemoteAddress();
+                event.commit();
+            }
+        }
+        AccessLogger log = accessLogger;
+        if (log != null) {
+            log.access(request, status, nanos);
+        }
     }
 
-    public static void post(String route, Service s) {
-        services.put(route, s);
+    /**
+     * write a message in the access log when its level is DEBUG
+     *
+     * @param message
+     */
+    static void debug(String message) {
+        AccessLogger log = accessLogger;
+        if (log != null) {
+            log.debug(message);
+        }
+    }
+
+    /**
+     * write the request line and the headers of a request in the access log
+     * when its level is DEBUG
+     *
+     * @param request
+     */
+    static void debugRequest(HttpRequest request) {
+        AccessLogger log = accessLogger;
+        // El texto solo se arma si se va a escribir
+        if (log != null && log.isDebug()) {
+            log.debug(request.getRemoteAddress() + " " + request.head());
+        }
+    }
+
+    /**
+     * answer a GET service registered with a time to live from the response
+     * cache, or run it and save its response when it is a 200
+     *
+     * @param route
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @param start System.nanoTime() when the request started
+     * @param deferred runs the service in another thread when the response is
+     * not in the cache, null to run it in this thread
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
+     */
+    private static boolean processCachedRequest(Router.Route route, HttpRequest request, OutputStream out, boolean keepAlive, long start,
+            DeferredOutput deferred) throws IOException {
+        ResponseCache cache = responseCache;
+        String key = ResponseCache.key(request);
+        long now = System.nanoTime();
+        ResponseCache.Entry entry = cache.get(key, now);
+        if (entry == null) {
+            if (deferred != null) {
+                deferred.dispatch(() -> respondUncached(route, request, out, keepAlive, start, key, now));
+                return keepAlive;
+            }
+            return respondUncached(route, request, out, keepAlive, start, key, now);
+        }
+        out.write(entry.header(keepAlive));
+        out.write(entry.body);
+        completed(route.metrics, request, 200, start);
+        return keepAlive;
+    }
+
+    /**
+     * run a cached service whose response is not in the cache, and save it
+     * when it is a 200
+     *
+     * @param route
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @param start System.nanoTime() when the request started
+     * @param key key of the response in the cache
+     * @param now System.nanoTime() when the cache was checked
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException
+     */
+    private static boolean respondUncached(Router.Route route, HttpRequest request, OutputStream out, boolean keepAlive, long start,
+            String key, long now) throws IOException {
+        // La respuesta se arma en memoria para poder guardarla ya codificada
+        HttpResponse res = new HttpResponse();
+        try {
+            res.finish(runService(route, request, res));
+        } catch (RuntimeException e) {
+            System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, e);
+            // Nada se envio todavia, lo que el servicio escribio se descarta
+            res = new HttpResponse();
+            res.sendError(500);
+        }
+        byte[] body = res.bufferedBody();
+        if (res.closeRequested()) {
+            out.write(res.encodeHeaders(body.length, false));
+            out.write(body);
+            completed(route.metrics, request, res.getStatus(), start);
+            return false;
+        }
+        ResponseCache.Entry entry = new ResponseCache.Entry(res.encodeHeaders(body.length, true), res.encodeHeaders(body.length, false), body,
+                now + TimeUnit.MILLISECONDS.toNanos(route.cacheTtlMillis));
+        if (res.getStatus() == 200) {
+            responseCache.put(key, entry);
+        }
+        out.write(entry.header(keepAlive));
+        out.write(entry.body);
+        completed(route.metrics, request, res.getStatus(), start);
+        return keepAlive;
+    }
+
+    /**
+     * run a synchronous service
+     *
+     * @param route
+     * @param request
+     * @param res
+     * @return the body returned by the service
+     * @throws RuntimeException if the service fails, the caller answers 500
+     */
+    private static String runService(Router.Route route, HttpRequest request, HttpResponse res) {
+        HttpEvents.Service event = new HttpEvents.Service();
+        event.begin();
+        try {
+            return route.service.executeService(request, res);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.handler = route.pattern;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * start an asynchronous service with the timeout of its route
+     *
+     * @param route
+     * @param request
+     * @param res
+     * @return the result of the service, it fails with a TimeoutException if
+     * it does not complete in time
+     */
+    private static CompletableFuture<String> executeAsync(Router.Route route, HttpRequest request, HttpResponse res) {
+        CompletableFuture<String> future;
+        HttpEvents.Service event = new HttpEvents.Service();
+        event.begin();
+        try {
+            future = route.asyncService.executeService(request, res);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.handler = route.pattern;
+                event.commit();
+            }
+        }
+        if (future == null) {
+            return CompletableFuture.failedFuture(new NullPointerException("The service " + route.pattern + " returned no future"));
+        }
+        // El timeout se aplica a una copia, el futuro del servicio puede ser compartido
+        return future.copy().orTimeout(route.timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * write the response of an asynchronous service, 504 if it timed out or
+     * 500 if it failed
+     *
+     * @param result
+     * @param res
+     * @return false if the response needs the connection to be closed after it
+     * @throws IOException if the connection fails or the service failed after
+     * sending its headers
+     */
+    private static boolean finishAsync(CompletableFuture<String> result, HttpResponse res) throws IOException {
+        String body;
+        try {
+            body = result.join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (res.isCommitted()) {
+                throw new IOException("Asynchronous service failed after sending its headers", cause);
+            }
+            if (cause instanceof TimeoutException) {
+                res.sendError(504);
+            } else {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, cause);
+                res.sendError(500);
+            }
+            return res.isKeepAlive();
+        }
+        res.finish(body);
+        return res.isKeepAlive();
+    }
+
+    /**
+     * find the route of a service in the table of the method
+     *
+     * @param method
+     * @param path path of the request, starting with "/app"
+     * @param request receives the path parameters, may be null
+     * @return the route or null if the method has no route for the path
+     */
+    static Router.Route matchRoute(String method, String path, HttpRequest request) {
+        Router router = routers.get(method.equals("HEAD") ? "GET" : method);
+        return router == null ? null : router.match(path, 4, request);
+    }
+
+    /**
+     * find the methods that have a route for a path
+     *
+     * @param path path of the request, starting with "/app"
+     * @return the value of the Allow header or null if no method has a route
+     */
+    private static String allowedMethods(String path) {
+        StringBuilder allow = new StringBuilder();
+        for (Map.Entry<String, Router> table : routers.entrySet()) {
+            if (table.getValue().match(path, 4, null) != null) {
+                allow.append(allow.length() == 0 ? "" : ", ").append(table.getKey());
+                if (table.getKey().equals("GET")) {
+                    allow.append(", HEAD");
+                }
+            }
+        }
+        return allow.length() == 0 ? null : allow.toString();
+    }
+
+    /**
+     * handle image response
+     *
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int getImage(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        String path = request.getPath();
+        //File extension
+        String fileExtension = path.substring(path.lastIndexOf(".") + 1).toLowerCase();
+
+        return getStaticFile(request, staticFileName(path), "image/" + fileExtension, out, keepAlive);
+    }
+
+    /**
+     * handle not found response
+     *
+     * @param out
+     * @param keepAlive
+     * @throws IOException
+     */
+    private static void notFound(OutputStream out, boolean keepAlive) throws IOException {
+        writeResponse(out, "404 Not Found", "text/plain", "404 Not Found".getBytes(StandardCharsets.UTF_8), keepAlive);
+    }
+
+    /**
+     * handle a request with a method that the path does not support
+     *
+     * @param out
+     * @param allow methods supported by the path
+     * @param keepAlive
+     * @throws IOException
+     */
+    private static void methodNotAllowed(OutputStream out, String allow, boolean keepAlive) throws IOException {
+        writeResponse(out, "405 Method Not Allowed", "text/plain", "Allow: " + allow + "\r\n",
+                "405 Method Not Allowed".getBytes(StandardCharsets.UTF_8), keepAlive);
+    }
+
+    /**
+     * handle a request of a client that has no tokens left in the rate limit
+     * of the route
+     *
+     * @param out
+     * @param limiter
+     * @param waitNanos time until the client gets a new token
+     * @param keepAlive
+     * @throws IOException
+     */
+    private static void tooManyRequests(OutputStream out, RateLimiter limiter, long waitNanos, boolean keepAlive) throws IOException {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+        writeResponse(out, "429 Too Many Requests", "text/plain",
+                "RateLimit-Limit: " + limiter.getBurst() + "\r\n"
+                + "RateLimit-Remaining: 0\r\n"
+                + "RateLimit-Reset: " + seconds + "\r\n"
+                + "Retry-After: " + seconds + "\r\n",
+                "429 Too Many Requests".getBytes(StandardCharsets.UTF_8), keepAlive);
+    }
+
+    /**
+     * handle a request that can not be parsed, the connection is closed after
+     * it
+     *
+     * @param out
+     * @param status
+     * @param reason
+     * @throws IOException
+     */
+    static void sendError(OutputStream out, int status, String reason) throws IOException {
+        String statusLine = status + " " + reason;
+        writeResponse(out, statusLine, "text/plain", statusLine.getBytes(StandardCharsets.UTF_8), false);
+    }
+
+    /**
+     * write a complete response, the Content-Length lets the client find the
+     * end of the body without closing the connection
+     *
+     * @param out
+     * @param status
+     * @param contentType
+     * @param body
+     * @param keepAlive
+     * @throws IOException
+     */
+    private static void writeResponse(OutputStream out, String status, String contentType, byte[] body, boolean keepAlive) throws IOException {
+        writeResponse(out, status, contentType, "", body, keepAlive);
+    }
+
+    /**
+     * write a complete response with more headers
+     *
+     * @param out
+     * @param status
+     * @param contentType
+     * @param extraHeaders header lines, each one ending with CRLF
+     * @param body
+     * @param keepAlive
+     * @throws IOException
+     */
+    private static void writeResponse(OutputStream out, String status, String contentType, String extraHeaders, byte[] body, boolean keepAlive) throws IOException {
+        writeHeaders(out, status, contentType, body.length, keepAlive, extraHeaders);
+        out.write(body);
+    }
+
+    /**
+     * write the status line and the headers of a response
+     *
+     * @param out
+     * @param status
+     * @param contentType
+     * @param contentLength
+     * @param keepAlive
+     * @param extraHeaders header lines, each one ending with CRLF
+     * @throws IOException
+     */
+    private static void writeHeaders(OutputStream out, String status, String contentType, long contentLength, boolean keepAlive, String extraHeaders) throws IOException {
+        out.write(headers(status, contentType, contentLength, keepAlive, extraHeaders).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * build the status line and the headers of a response
+     *
+     * @param status
+     * @param contentType null for a response without body
+     * @param contentLength negative for a response without body
+     * @param keepAlive
+     * @param extraHeaders header lines, each one ending with CRLF
+     * @return the headers ending with the blank line
+     */
+    static String headers(String status, String contentType, long contentLength, boolean keepAlive, String extraHeaders) {
+        return "HTTP/1.1 " + status + "\r\n"
+                + (contentType == null ? "" : "Content-Type: " + contentType + "\r\n")
+                + (contentLength < 0 ? "" : "Content-Length: " + contentLength + "\r\n")
+                + extraHeaders
+                + "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n"
+                + "\r\n";
+    }
+
+    /**
+     * format a date as an HTTP-date, like "Sun, 06 Nov 1994 08:49:37 GMT"
+     *
+     * @param millis
+     * @return the date
+     */
+    static String httpDate(long millis) {
+        return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+    }
+
+    /**
+     * parse an HTTP-date like the one of If-Modified-Since
+     *
+     * @param date
+     * @return the date in milliseconds or -1 if it is not valid
+     */
+    static long parseHttpDate(String date) {
+        try {
+            return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * find the Cache-Control policy of the longest prefix that matches the
+     * path
+     *
+     * @param path
+     * @return the value of the header or null if no policy matches
+     */
+    static String cacheControlFor(String path) {
+        String value = null;
+        int matched = -1;
+        for (Map.Entry<String, String> policy : cacheControls.entrySet()) {
+            if (path.startsWith(policy.getKey()) && policy.getKey().length() > matched) {
+                value = policy.getValue();
+                matched = policy.getKey().length();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Register a GET service. The route can have parameters like
+     * "/users/{id}", read with getPathParam, and end with a wildcard like
+     * "/files/*"
+     *
+     * @param route
+     * @param s
+     */
+    public static void get(String route, Service s) {
+        addRoute("GET", route, s);
+    }
+
+    /**
+     * Register a GET service whose responses are cached. Only for services
+     * whose response depends only on the path and the query, a 200 response
+     * is reused for the same path and query parameters until it expires
+     *
+     * @param route
+     * @param s
+     * @param cacheTtlMillis time a response is reused
+     */
+    public static void get(String route, Service s, long cacheTtlMillis) {
+        if (cacheTtlMillis <= 0) {
+            throw new IllegalArgumentException("cacheTtlMillis must be positive");
+        }
+        addRoute("GET", route, s, cacheTtlMillis);
+    }
+
+    /**
+     * Register a POST service, it does not replace a GET service of the same
+     * route
+     *
+     * @param route
+     * @param s
+     */
+    public static void post(String route, Service s) {
+        addRoute("POST", route, s);
+    }
+
+    /**
+     * Register an asynchronous GET service, its response is written when the
+     * future completes or 504 after the default timeout
+     *
+     * @param route
+     * @param s
+     */
+    public static void getAsync(String route, AsyncService s) {
+        getAsync(route, s, DEFAULT_ASYNC_TIMEOUT);
+    }
+
+    /**
+     * Register an asynchronous GET service
+     *
+     * @param route
+     * @param s
+     * @param timeoutMillis time the future is waited for before answering 504
+     */
+    public static void getAsync(String route, AsyncService s, long timeoutMillis) {
+        addAsyncRoute("GET", route, s, timeoutMillis);
+    }
+
+    /**
+     * Register an asynchronous POST service, its response is written when the
+     * future completes or 504 after the default timeout
+     *
+     * @param route
+     * @param s
+     */
+    public static void postAsync(String route, AsyncService s) {
+        postAsync(route, s, DEFAULT_ASYNC_TIMEOUT);
+    }
+
+    /**
+     * Register an asynchronous POST service
+     *
+     * @param route
+     * @param s
+     * @param timeoutMillis time the future is waited for before answering 504
+     */
+    public static void postAsync(String route, AsyncService s, long timeoutMillis) {
+        addAsyncRoute("POST", route, s, timeoutMillis);
+    }
+
+    /**
+     * Limit the requests that each client IP can send to a route, in every
+     * method. A client without tokens gets 429 with RateLimit and Retry-After
+     * headers
+     *
+     * @param route the route as it was registered, like "/users/{id}"
+     * @param permitsPerSecond requests per second of each client
+     * @param burst requests a client can send at once after being idle
+     */
+    public static void rateLimit(String route, double permitsPerSecond, int burst) {
+        RateLimiter limiter = new RateLimiter(permitsPerSecond, burst);
+        synchronized (rateLimits) {
+            rateLimits.put(route, limiter);
+            for (Router router : routers.values()) {
+                Router.Route registered = router.get(route);
+                if (registered != null) {
+                    registered.rateLimiter = limiter;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param route the route as it was registered
+     * @return requests of the route rejected with 429, 0 if it has no limit
+     */
+    public static long getRateLimited(String route) {
+        synchronized (rateLimits) {
+            RateLimiter limiter = rateLimits.get(route);
+            return limiter == null ? 0 : limiter.getRejected();
+        }
+    }
+
+    /**
+     * give a new route its rate limit and its metrics, the metrics of a
+     * route registered again are kept
+     *
+     * @param method
+     * @param route
+     */
+    private static void configure(String method, Router.Route route) {
+        synchronized (rateLimits) {
+            route.rateLimiter = rateLimits.get(route.pattern);
+        }
+        route.metrics = metrics.route(method, route.pattern);
+    }
+
+    private static void addRoute(String method, String route, Service s) {
+        addRoute(method, route, s, 0);
+    }
+
+    /**
+     * @param method
+     * @param route
+     * @param s
+     * @param cacheTtlMillis time a response is reused, 0 to not cache them
+     */
+    private static void addRoute(String method, String route, Service s, long cacheTtlMillis) {
+        // services conserva la ultima ruta registrada sin importar el metodo
+        services.put(route, s);
+        configure(method, routers.computeIfAbsent(method, m -> new Router()).add(route, s, cacheTtlMillis));
+        // Las respuestas guardadas pueden ser de un servicio reemplazado
+        responseCache.clear();
+    }
+
+    private static void addAsyncRoute(String method, String route, AsyncService s, long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be positive");
+        }
+        // En services queda una version que espera el futuro
+        Service blocking = (req, res) -> s.executeService(req, res).orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).join();
+        services.put(route, blocking);
+        configure(method, routers.computeIfAbsent(method, m -> new Router()).add(route, blocking, s, timeoutMillis));
+        responseCache.clear();
+    }
+
+    /**
+     * Handle every accepted connection in its own virtual thread instead of
+     * the accept loop. Must be called before startServer
+     *
+     * @param maxConcurrentConnections max number of connections handled at
+     * the same time, the rest wait in the accept backlog
+     */
+    public static void virtualThreads(int maxConcurrentConnections) {
+        if (maxConcurrentConnections <= 0) {
+            throw new IllegalArgumentException("maxConcurrentConnections must be positive");
+        }
+        virtualThreads = true;
+        maxConnections = maxConcurrentConnections;
+    }
+
+    /**
+     * Number of connections that are being handled right now in virtual
+     * threads
+     *
+     * @return the active handlers
+     */
+    public static int getActiveHandlers() {
+        return activeHandlers.get();
+    }
+
+    /**
+     * Configure the persistent connections. They are used by the virtual
+     * thread and NIO engines, the single threaded loop always closes the
+     * connection after the response
+     *
+     * @param idleTimeoutMillis time a connection can wait for its next
+     * request before it is closed
+     * @param maxRequestsPerConnection requests served on one connection
+     * before it is closed, 1 disables keep-alive
+     */
+    public static void keepAlive(int idleTimeoutMillis, int maxRequestsPerConnection) {
+        if (idleTimeoutMillis <= 0 || maxRequestsPerConnection <= 0) {
+            throw new IllegalArgumentException("keep-alive limits must be positive");
+        }
+        keepAliveTimeout = idleTimeoutMillis;
+        maxKeepAliveRequests = maxRequestsPerConnection;
+    }
+
+    /**
+     * Limits of the request line and headers. A request line longer than
+     * maxHeaderSize is answered with 414, more header bytes or headers than
+     * allowed with 431
+     *
+     * @param maxHeaderSize max bytes of the request line and headers
+     * @param maxHeaderCount max number of headers
+     */
+    public static void requestLimits(int maxHeaderSize, int maxHeaderCount) {
+        if (maxHeaderSize < 64 || maxHeaderCount <= 0) {
+            throw new IllegalArgumentException("invalid request limits");
+        }
+        HttpRequestParser.limits(maxHeaderSize, maxHeaderCount);
+    }
+
+    /**
+     * Max size of a request body, larger ones are answered with 413
+     *
+     * @param bytes
+     */
+    public static void maxBodySize(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("bytes must not be negative");
+        }
+        maxBodySize = bytes;
+    }
+
+    static long maxBodySize() {
+        return maxBodySize;
+    }
+
+    /**
+     * Deadlines of the connections, in both engines. A connection is closed
+     * when its request line and headers do not arrive within headerReadMillis
+     * of their first byte, its body within bodyReadMillis of the headers, or
+     * when a write waits longer than writeMillis for the client. The idle
+     * timeout between requests is the one of keepAlive
+     *
+     * @param headerReadMillis
+     * @param bodyReadMillis
+     * @param writeMillis
+     */
+    public static void timeouts(int headerReadMillis, int bodyReadMillis, int writeMillis) {
+        if (headerReadMillis <= 0 || bodyReadMillis <= 0 || writeMillis <= 0) {
+            throw new IllegalArgumentException("timeouts must be positive");
+        }
+        headerReadTimeout = headerReadMillis;
+        bodyReadTimeout = bodyReadMillis;
+        writeTimeout = writeMillis;
+    }
+
+    static int headerReadTimeout() {
+        return headerReadTimeout;
+    }
+
+    static int bodyReadTimeout() {
+        return bodyReadTimeout;
+    }
+
+    static int writeTimeout() {
+        return writeTimeout;
+    }
+
+    static void timedOut(TimeoutType type) {
+        timeouts[type.ordinal()].increment();
+    }
+
+    /**
+     * @param type
+     * @return connections closed by that timeout since the server started
+     */
+    public static long getTimeouts(TimeoutType type) {
+        return timeouts[type.ordinal()].sum();
+    }
+
+    /**
+     * Handle the requests in a fixed number of worker threads with a bounded
+     * queue in front of them. A request that finds the queue full is answered
+     * right away with 503 and Retry-After and its connection is closed, a
+     * request that waited in it longer than queueWaitMillis gets the same
+     * answer from the worker that takes it, without running its service
+     *
+     * @param threads number of worker threads
+     * @param queueDepth requests that can wait for a worker
+     * @param queueWaitMillis time a request can wait for a worker, more than 0
+     */
+    public static void workerPool(int threads, int queueDepth, long queueWaitMillis) {
+        WorkerPool previous = workerPool;
+        workerPool = new WorkerPool(threads, queueDepth, queueWaitMillis);
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    /**
+     * Handle the requests in the connection threads again, without a worker
+     * pool
+     */
+    public static void noWorkerPool() {
+        WorkerPool previous = workerPool;
+        workerPool = null;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    static WorkerPool workerPool() {
+        return workerPool;
+    }
+
+    /**
+     * @return requests answered with 503 because the worker pool was
+     * saturated, 0 without a worker pool
+     */
+    public static long getShedRequests() {
+        WorkerPool pool = workerPool;
+        return pool == null ? 0 : pool.getShed();
+    }
+
+    /**
+     * Port of the server, 35000 by default. Must be called before startServer
+     *
+     * @param serverPort
+     */
+    public static void port(int serverPort) {
+        if (serverPort < 0 || serverPort > 65535) {
+            throw new IllegalArgumentException("Invalid port " + serverPort);
+        }
+        port = serverPort;
+    }
+
+    /**
+     * Open several listening sockets on the same port with SO_REUSEPORT, each
+     * one with its own accept thread, or its own reactor in the NIO engine,
+     * so the kernel spreads the new connections among the cores. Must be
+     * called before startServer
+     *
+     * @param count number of listeners, 1 by default. With the NIO engine
+     * use as many listeners as reactors
+     */
+    public static void listeners(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("listeners must be positive");
+        }
+        listeners = count;
+    }
+
+    /**
+     * @return connections accepted by each listener since the server started
+     */
+    public static long[] getListenerConnections() {
+        AtomicLongArray counts = listenerConnections;
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Use the non blocking selector engine with one reactor thread per core.
+     * Must be called before startServer
+     */
+    public static void nioEngine() {
+        nioEngine(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Use the non blocking selector engine. Must be called before startServer
+     *
+     * @param reactors number of selector threads that serve the connections
+     */
+    public static void nioEngine(int reactors) {
+        if (reactors <= 0) {
+            throw new IllegalArgumentException("reactors must be positive");
+        }
+        nioEngine = true;
+        reactorThreads = reactors;
+    }
+
+    /**
+     * Configure the in memory cache of static files
+     *
+     * @param maxBytes byte budget of the cache, the least recently used files
+     * are evicted when it is exceeded. Files larger than a quarter of it are
+     * always read from disk
+     * @param revalidateMillis time a cached file is served before checking
+     * again if it changed on disk
+     */
+    public static void staticCache(long maxBytes, long revalidateMillis) {
+        if (maxBytes < 0 || revalidateMillis < 0) {
+            throw new IllegalArgumentException("cache limits must not be negative");
+        }
+        staticFileCache = new StaticFileCache(maxBytes, revalidateMillis, staticFileCache.getCompressMinSize());
+    }
+
+    /**
+     * Configure the gzip and deflate compression of the static text files.
+     * Each version of a file is compressed once, when it enters the cache
+     *
+     * @param enabled false to always send the files as they are
+     * @param minSize files smaller than this are not compressed
+     */
+    public static void compression(boolean enabled, int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("minSize must not be negative");
+        }
+        staticFileCache = new StaticFileCache(staticFileCache.getMaxBytes(), staticFileCache.getRevalidateMillis(), enabled ? minSize : -1);
+    }
+
+    /**
+     * Send a Cache-Control header with the static files under a path prefix,
+     * when several prefixes match a file the longest one is used
+     *
+     * @param pathPrefix like "/images/"
+     * @param value like "public, max-age=86400"
+     */
+    public static synchronized void cacheControl(String pathPrefix, String value) {
+        Map<String, String> policies = new HashMap<String, String>(cacheControls);
+        policies.put(pathPrefix, value);
+        cacheControls = policies;
+    }
+
+    /**
+     * Configure the cache of the GET services registered with a time to live
+     *
+     * @param maxEntries max number of cached responses
+     * @param maxBytes byte budget of the cached responses, the least recently
+     * used are evicted when it or maxEntries is exceeded
+     */
+    public static void responseCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("cache limits must not be negative");
+        }
+        responseCache = new ResponseCache(maxEntries, maxBytes);
+    }
+
+    /**
+     * @return the cache of the service responses, with its hit, miss and
+     * eviction counters
+     */
+    public static ResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * @return the static file cache, with its hit, miss and eviction counters
+     */
+    public static StaticFileCache getStaticFileCache() {
+        return staticFileCache;
+    }
+
+    /**
+     * Keep a Flight Recorder recording of the last maxAgeMillis with the
+     * default settings of the JDK and the request events of the server. A
+     * GET to adminPath from the same machine downloads it as a .jfr file,
+     * to open it in JDK Mission Control or with the jfr tool
+     *
+     * @param adminPath like "/admin/recording", null to only dump it with
+     * dumpFlightRecording
+     * @param maxAgeMillis time of recording that is kept
+     * @throws IOException if the settings of the JDK can not be read
+     * @throws ParseException if the settings of the JDK are not valid
+     */
+    public static void flightRecording(String adminPath, long maxAgeMillis) throws IOException, ParseException {
+        if (adminPath != null && (!adminPath.startsWith("/") || adminPath.startsWith("/app"))) {
+            throw new IllegalArgumentException("Invalid recording path " + adminPath);
+        }
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("maxAgeMillis must be positive");
+        }
+        Recording started = new Recording(Configuration.getConfiguration("default"));
+        started.setName("http-server");
+        started.setToDisk(true);
+        started.setMaxAge(Duration.ofMillis(maxAgeMillis));
+        started.start();
+        Recording previous = recording;
+        recording = started;
+        recordingPath = adminPath;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stop the recording started with flightRecording
+     */
+    public static void noFlightRecording() {
+        Recording previous = recording;
+        recording = null;
+        recordingPath = null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Write what the recording has now to a file, it keeps recording
+     *
+     * @param file like "server.jfr"
+     * @throws IOException
+     * @throws IllegalStateException if flightRecording was not called
+     */
+    public static void dumpFlightRecording(Path file) throws IOException {
+        Recording current = recording;
+        if (current == null) {
+            throw new IllegalStateException("No flight recording, call flightRecording first");
+        }
+        current.dump(file);
+    }
+
+    /**
+     * send the flight recording to a client of the same machine, 403 to the
+     * rest. The recording is dumped to a temporary file that goes to the
+     * socket with transferTo and is deleted once it was sent, so it never
+     * goes through the heap
+     *
+     * @param request
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int sendRecording(HttpRequest request, OutputStream out, boolean keepAlive) throws IOException {
+        String remote = request.getRemoteAddress();
+        // La direccion ya es una IP, no se consulta el DNS
+        if (remote == null || !InetAddress.getByName(remote).isLoopbackAddress()) {
+            writeResponse(out, "403 Forbidden", "text/plain", "403 Forbidden".getBytes(StandardCharsets.UTF_8), keepAlive);
+            return 403;
+        }
+        Path file = Files.createTempFile("http-server-", ".jfr");
+        try {
+            try {
+                dumpFlightRecording(file);
+            } catch (IllegalStateException e) {
+                // La grabacion se detuvo despues de elegir esta ruta
+                notFound(out, keepAlive);
+                return 404;
+            }
+            long size = Files.size(file);
+            writeHeaders(out, "200 OK", "application/octet-stream", size, keepAlive,
+                    "Content-Disposition: attachment; filename=\"http-server-" + System.currentTimeMillis() + ".jfr\"\r\n"
+                    + "Cache-Control: no-store\r\n");
+            if (out instanceof FileTransferOutput) {
+                // Desde aqui el archivo lo borra la conexion, en NIO despues de enviarlo
+                Path sent = file;
+                file = null;
+                ((FileTransferOutput) out).transferTemporaryFile(sent, size);
+            } else {
+                Files.copy(file, out);
+            }
+            return 200;
+        } finally {
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Write a line for each response in a file, in the common log format with
+     * the time to handle the request in microseconds at the end. The lines
+     * are written by a background thread, when it falls behind they are
+     * dropped instead of slowing down the requests
+     *
+     * @param file like "logs/access.log"
+     * @param maxFileBytes size at which the file is renamed to file.1 and a
+     * new one is started
+     * @param maxFiles files kept, counting the current one
+     * @throws IOException if the file can not be opened
+     */
+    public static void accessLog(String file, long maxFileBytes, int maxFiles) throws IOException {
+        AccessLogger previous = accessLogger;
+        accessLogger = new AccessLogger(Paths.get(file), maxFileBytes, maxFiles, ACCESS_LOG_CAPACITY);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Change what the access log writes while the server runs, DEBUG adds the
+     * accepted connections and the headers of every request
+     *
+     * @param level
+     */
+    public static void accessLogLevel(AccessLogLevel level) {
+        if (level == null) {
+            throw new IllegalArgumentException("level must not be null");
+        }
+        AccessLogger log = accessLogger;
+        if (log != null) {
+            log.level(level);
+        }
+    }
+
+    /**
+     * Stop the access log, the lines that are waiting are written first
+     */
+    public static void noAccessLog() {
+        AccessLogger previous = accessLogger;
+        accessLogger = null;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * @return lines of the access log dropped because the writer fell behind,
+     * since the log was opened
+     */
+    public static long getDroppedLogRecords() {
+        AccessLogger log = accessLogger;
+        return log == null ? 0 : log.getDropped();
+    }
+
+    /**
+     * Path where the metrics are published in the Prometheus text format,
+     * "/metrics" by default
+     *
+     * @param path like "/metrics", null to not publish them
+     */
+    public static void metricsEndpoint(String path) {
+        if (path != null && (!path.startsWith("/") || path.startsWith("/app"))) {
+            throw new IllegalArgumentException("Invalid metrics path " + path);
+        }
+        metricsPath = path;
+    }
+
+    /**
+     * The metrics of the server in the Prometheus text format: responses and
+     * latency histograms by route and type of static file, timeouts, shed
+     * and rate limited requests and accepted connections
+     *
+     * @return the metrics
+     */
+    public static String getMetrics() {
+        StringBuilder text = new StringBuilder(16 * 1024);
+        metrics.write(text);
+
+        Metrics.header(text, "http_server_timeouts_total", "counter", "Connections closed by a timeout");
+        for (TimeoutType type : TimeoutType.values()) {
+            Metrics.sample(text, "http_server_timeouts_total", "type", type.name().toLowerCase(Locale.ROOT), getTimeouts(type));
+        }
+        Metrics.header(text, "http_server_shed_requests_total", "counter", "Requests answered with 503 by the worker pool");
+        Metrics.sample(text, "http_server_shed_requests_total", null, null, getShedRequests());
+        Metrics.header(text, "http_server_rate_limited_total", "counter", "Requests answered with 429 by the rate limit of a route");
+        synchronized (rateLimits) {
+            for (Map.Entry<String, RateLimiter> limit : new TreeMap<>(rateLimits).entrySet()) {
+                Metrics.sample(text, "http_server_rate_limited_total", "handler", limit.getKey(), limit.getValue().getRejected());
+            }
+        }
+        Metrics.header(text, "http_server_connections_total", "counter", "Connections accepted by each listener");
+        long[] accepted = getListenerConnections();
+        for (int i = 0; i < accepted.length; i++) {
+            Metrics.sample(text, "http_server_connections_total", "listener", String.valueOf(i), accepted[i]);
+        }
+        Metrics.header(text, "http_server_access_log_dropped_total", "counter", "Access log lines dropped because the writer fell behind");
+        Metrics.sample(text, "http_server_access_log_dropped_total", null, null, getDroppedLogRecords());
+        Metrics.header(text, "http_server_active_handlers", "gauge", "Connections handled in virtual threads right now");
+        Metrics.sample(text, "http_server_active_handlers", null, null, getActiveHandlers());
+        return text.toString();
+    }
+
+    /**
+     * send the metrics in the Prometheus text format
+     *
+     * @param out
+     * @param keepAlive
+     * @return the status of the response
+     * @throws IOException
+     */
+    private static int sendMetrics(OutputStream out, boolean keepAlive) throws IOException {
+        writeResponse(out, "200 OK", "text/plain; version=0.0.4; charset=utf-8", "Cache-Control: no-store\r\n",
+                getMetrics().getBytes(StandardCharsets.UTF_8), keepAlive);
+        return 200;
     }
 
     public static void staticfiles(String staticFile) {
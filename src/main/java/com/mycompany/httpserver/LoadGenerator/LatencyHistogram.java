@@ -0,0 +1,135 @@
+package com.mycompany.httpserver.LoadGenerator;
+
+/**
+ * Histogram of latencies in microseconds with a bounded relative error, in the
+ * style of HdrHistogram. Values below 2048 have their own bucket, larger
+ * values share buckets of 1024 per power of two, so a recorded value is
+ * reported within 0.1% of its real value and the memory does not depend on
+ * the number of samples. It is not thread safe, each connection records in
+ * its own histogram and they are added at the end.
+ *
+ * @author sebastian.cardona-p
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 11;
+    private static final int HALF = 1 << (SUB_BUCKET_BITS - 1);
+    // Mas de 19 horas en microsegundos, los valores mayores se guardan aqui
+    private static final long MAX_VALUE = (1L << 36) - 1;
+
+    private final long[] counts = new long[index(MAX_VALUE) + 1];
+    private long totalCount;
+    private long sum;
+    private long max;
+
+    /**
+     * @param value latency in microseconds
+     */
+    public void record(long value) {
+        record(value, 1);
+    }
+
+    /**
+     * @param value latency in microseconds
+     * @param count times the value is recorded
+     */
+    public void record(long value, long count) {
+        long bounded = Math.min(Math.max(value, 0), MAX_VALUE);
+        counts[index(bounded)] += count;
+        totalCount += count;
+        sum += bounded * count;
+        max = Math.max(max, bounded);
+    }
+
+    /**
+     * @param other histogram whose values are added to this one
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * A copy with the samples that a client that waited for each response
+     * did not send. A latency L, when the requests were expected every
+     * expectedInterval, hid the requests that would have been sent during L,
+     * which would have waited L - interval, L - 2 * interval and so on
+     *
+     * @param expectedInterval microseconds between requests of one connection
+     * @return the corrected histogram
+     */
+    public LatencyHistogram corrected(long expectedInterval) {
+        LatencyHistogram result = new LatencyHistogram();
+        result.add(this);
+        if (expectedInterval <= 0) {
+            return result;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            long value = highestValue(i);
+            for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+                result.record(missing, counts[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the smallest latency that is higher or equal than that
+     * percentage of the samples, 0 without samples
+     */
+    public long percentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : (double) sum / totalCount;
+    }
+
+    private static int index(long value) {
+        if (value < 2 * HALF) {
+            return (int) value;
+        }
+        // Cada potencia de dos tiene HALF cubetas del mismo ancho
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return (shift + 1) * HALF + (int) (value >>> shift) - HALF;
+    }
+
+    /**
+     * @return the highest value that goes to the bucket
+     */
+    private static long highestValue(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long sub = index % HALF + HALF;
+        return ((sub + 1) << shift) - 1;
+    }
+}
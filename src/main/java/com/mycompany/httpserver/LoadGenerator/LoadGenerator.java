@@ -0,0 +1,451 @@
+package com.mycompany.httpserver.LoadGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load test client for the server. It opens C connections, each one in its
+ * own thread, and sends a weighted mix of GET requests for a fixed time.
+ *
+ * In the closed loop each connection sends its next request when the
+ * previous response arrives. In the open loop (--rate) the requests are
+ * scheduled at a fixed total rate whatever the server does, and the latency
+ * is measured from the time each request should have been sent, so a server
+ * that stalls is not hidden by a client that stopped sending
+ * (coordinated omission). The closed loop reports the latency corrected for
+ * that effect too.
+ *
+ * Run it with:
+ * mvn compile exec:java
+ * -Dexec.mainClass=com.mycompany.httpserver.LoadGenerator.LoadGenerator
+ * -Dexec.args="-c 32 -d 10 --rate 20000"
+ *
+ * @author sebastian.cardona-p
+ */
+public class LoadGenerator {
+
+    static final String DEFAULT_MIX = "/=3,/styles/style.css=2,/images/usuario.png=2,/app/hello?name=x&age=1=3";
+
+    /**
+     * Settings of a run
+     */
+    static final class Options {
+
+        String host = "localhost";
+        int port = 35000;
+        int connections = 16;
+        double durationSeconds = 10;
+        double warmupSeconds = 2;
+        // 0 para el modo de ciclo cerrado
+        double rate;
+        boolean keepAlive = true;
+        String mix = DEFAULT_MIX;
+
+        /**
+         * @param args like "-c 32 -d 10 --rate 5000 --no-keepalive"
+         * @return the options
+         * @throws IllegalArgumentException if an option is not valid
+         */
+        static Options parse(String[] args) {
+            Options options = new Options();
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--no-keepalive")) {
+                    options.keepAlive = false;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value of " + arg);
+                }
+                String value = args[++i];
+                switch (arg) {
+                    case "-h":
+                    case "--host":
+                        options.host = value;
+                        break;
+                    case "-p":
+                    case "--port":
+                        options.port = Integer.parseInt(value);
+                        break;
+                    case "-c":
+                    case "--connections":
+                        options.connections = Integer.parseInt(value);
+                        break;
+                    case "-d":
+                    case "--duration":
+                        options.durationSeconds = Double.parseDouble(value);
+                        break;
+                    case "-w":
+                    case "--warmup":
+                        options.warmupSeconds = Double.parseDouble(value);
+                        break;
+                    case "-r":
+                    case "--rate":
+                        options.rate = Double.parseDouble(value);
+                        break;
+                    case "-m":
+                    case "--mix":
+                        options.mix = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (options.connections <= 0 || options.durationSeconds <= 0 || options.warmupSeconds < 0 || options.rate < 0) {
+                throw new IllegalArgumentException("connections and duration must be positive");
+            }
+            return options;
+        }
+    }
+
+    /**
+     * The requests of the mix, already encoded, with their cumulative weights
+     */
+    static final class Mix {
+
+        final String[] paths;
+        final byte[][] requests;
+        final int[] cumulativeWeights;
+
+        /**
+         * @param mix like "/=3,/app/hello?name=x=1", the weight is after the
+         * last "="
+         * @param host
+         * @param port
+         * @param keepAlive
+         */
+        Mix(String mix, String host, int port, boolean keepAlive) {
+            String[] entries = mix.split(",");
+            paths = new String[entries.length];
+            requests = new byte[entries.length][];
+            cumulativeWeights = new int[entries.length];
+            int total = 0;
+            for (int i = 0; i < entries.length; i++) {
+                String entry = entries[i].trim();
+                int separator = entry.lastIndexOf('=');
+                int weight = 1;
+                if (separator > 0 && entry.substring(separator + 1).matches("\\d+")) {
+                    weight = Integer.parseInt(entry.substring(separator + 1));
+                    entry = entry.substring(0, separator);
+                }
+                if (!entry.startsWith("/") || weight <= 0) {
+                    throw new IllegalArgumentException("Invalid mix entry " + entries[i]);
+                }
+                total += weight;
+                paths[i] = entry;
+                cumulativeWeights[i] = total;
+                requests[i] = ("GET " + entry + " HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n"
+                        + (keepAlive ? "" : "Connection: close\r\n") + "\r\n").getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        /**
+         * @return index of a request chosen by its weight
+         */
+        int next() {
+            int total = cumulativeWeights[cumulativeWeights.length - 1];
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return i;
+                }
+            }
+            return cumulativeWeights.length - 1;
+        }
+    }
+
+    /**
+     * Results of one connection, added at the end of the run
+     */
+    static final class Result {
+
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        // Ciclo abierto: desde el momento en que la solicitud se debia enviar
+        final LatencyHistogram responseTime = new LatencyHistogram();
+        final long[] statusClasses = new long[6];
+        long errors;
+        long bytes;
+
+        void add(Result other) {
+            serviceTime.add(other.serviceTime);
+            responseTime.add(other.responseTime);
+            for (int i = 0; i < statusClasses.length; i++) {
+                statusClasses[i] += other.statusClasses[i];
+            }
+            errors += other.errors;
+            bytes += other.bytes;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Options options;
+        try {
+            options = Options.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadGenerator [-h host] [-p port] [-c connections] [-d seconds] [-w warmup seconds]"
+                    + " [-r requests per second] [-m \"/=3,/app/hello?name=x=1\"] [--no-keepalive]");
+            System.exit(1);
+            return;
+        }
+        Result result = run(options);
+        System.out.print(report(options, result));
+    }
+
+    /**
+     * Run the load test
+     *
+     * @param options
+     * @return the results of every connection together
+     * @throws InterruptedException
+     */
+    static Result run(Options options) throws InterruptedException {
+        Mix mix = new Mix(options.mix, options.host, options.port, options.keepAlive);
+        long start = System.nanoTime();
+        long measureStart = start + (long) (options.warmupSeconds * 1e9);
+        long end = measureStart + (long) (options.durationSeconds * 1e9);
+
+        List<Thread> threads = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+        for (int i = 0; i < options.connections; i++) {
+            Result result = new Result();
+            results.add(result);
+            // En ciclo abierto cada conexion envia a rate / C, desfasada de las demas
+            long interval = options.rate > 0 ? (long) (1e9 * options.connections / options.rate) : 0;
+            long first = start + (interval > 0 ? interval * i / options.connections : 0);
+            Thread thread = new Thread(() -> connectionLoop(options, mix, result, first, interval, measureStart, end),
+                    "load-connection-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Result total = new Result();
+        for (Result result : results) {
+            total.add(result);
+        }
+        return total;
+    }
+
+    /**
+     * Send requests on one connection until the end of the run
+     *
+     * @param interval nanoseconds between the requests of the connection in
+     * the open loop, 0 in the closed loop
+     */
+    private static void connectionLoop(Options options, Mix mix, Result result, long first, long interval, long measureStart, long end) {
+        Socket socket = null;
+        long intended = first;
+        while (true) {
+            if (interval > 0) {
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            long sent = System.nanoTime();
+            if (sent - end >= 0) {
+                break;
+            }
+            long scheduled = interval > 0 ? intended : sent;
+            intended += interval;
+
+            int request = mix.next();
+            int status;
+            long bytes;
+            try {
+                if (socket == null) {
+                    socket = new Socket();
+                    socket.setTcpNoDelay(true);
+                    socket.connect(new InetSocketAddress(options.host, options.port), 5000);
+                    socket.setSoTimeout(30_000);
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write(mix.requests[request]);
+                out.flush();
+                Response response = readResponse(socket.getInputStream());
+                status = response.status;
+                bytes = response.bytes;
+                if (!options.keepAlive || response.close) {
+                    socket.close();
+                    socket = null;
+                }
+            } catch (IOException e) {
+                status = 0;
+                bytes = 0;
+                close(socket);
+                socket = null;
+            }
+            long done = System.nanoTime();
+
+            if (scheduled - measureStart < 0) {
+                continue;
+            }
+            if (status == 0) {
+                result.errors++;
+                continue;
+            }
+            result.statusClasses[Math.min(status / 100, 5)]++;
+            result.bytes += bytes;
+            result.serviceTime.record((done - sent) / 1000);
+            result.responseTime.record((done - scheduled) / 1000);
+        }
+        close(socket);
+    }
+
+    /**
+     * Status and size of a response
+     */
+    static final class Response {
+
+        int status;
+        long bytes;
+        boolean close;
+    }
+
+    /**
+     * Read a whole response, its body ends at its Content-Length, at the last
+     * chunk or at the end of the connection
+     *
+     * @param in input of the connection, it is wrapped in a buffer the first
+     * time
+     * @return the response
+     * @throws IOException if the connection ends before the response
+     */
+    static Response readResponse(InputStream in) throws IOException {
+        Response response = new Response();
+        String statusLine = readLine(in);
+        if (statusLine.length() < 12 || !statusLine.startsWith("HTTP/1.")) {
+            throw new IOException("Invalid status line " + statusLine);
+        }
+        response.status = Integer.parseInt(statusLine.substring(9, 12));
+        response.close = statusLine.startsWith("HTTP/1.0");
+        long contentLength = -1;
+        boolean chunked = false;
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            response.bytes += line.length() + 2;
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+            if (name.equals("content-length")) {
+                contentLength = Long.parseLong(value);
+            } else if (name.equals("transfer-encoding")) {
+                chunked = value.contains("chunked");
+            } else if (name.equals("connection")) {
+                response.close = value.contains("close");
+            }
+        }
+        response.bytes += statusLine.length() + 4;
+
+        if (chunked) {
+            long size;
+            while ((size = Long.parseLong(readLine(in).split(";")[0].trim(), 16)) > 0) {
+                skip(in, size);
+                readLine(in);
+                response.bytes += size;
+            }
+            while (!readLine(in).isEmpty()) {
+                // trailers
+            }
+        } else if (contentLength >= 0) {
+            skip(in, contentLength);
+            response.bytes += contentLength;
+        } else {
+            // Sin tamaño el cuerpo termina al cerrar la conexion
+            response.bytes += in.transferTo(OutputStream.nullOutputStream());
+            response.close = true;
+        }
+        return response;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("Connection closed before the end of the response");
+            }
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void skip(InputStream in, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Connection closed before the end of the body");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void close(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // La conexion ya no se usa
+        }
+    }
+
+    /**
+     * @param options
+     * @param result
+     * @return the text of the report
+     */
+    static String report(Options options, Result result) {
+        StringBuilder text = new StringBuilder();
+        long count = result.serviceTime.getCount();
+        double seconds = options.durationSeconds;
+        text.append(String.format(Locale.ROOT, "Target      %s:%d, %d connections, %s, %s, %.1f s (+%.1f s warmup)%n",
+                options.host, options.port, options.connections, options.keepAlive ? "keep-alive" : "connection per request",
+                options.rate > 0 ? String.format(Locale.ROOT, "open loop at %.0f req/s", options.rate) : "closed loop",
+                seconds, options.warmupSeconds));
+        text.append(String.format(Locale.ROOT, "Requests    %d (%.1f req/s), %.2f MB/s, %d errors%n",
+                count, count / seconds, result.bytes / seconds / 1e6, result.errors));
+        text.append(String.format(Locale.ROOT, "Status      1xx %d, 2xx %d, 3xx %d, 4xx %d, 5xx %d%n",
+                result.statusClasses[1], result.statusClasses[2], result.statusClasses[3], result.statusClasses[4], result.statusClasses[5]));
+        text.append(String.format(Locale.ROOT, "%-34s %9s %9s %9s %9s %9s %9s%n", "Latency (us)", "mean", "p50", "p90", "p99", "p99.9", "max"));
+        appendLatency(text, "service time", result.serviceTime);
+        if (options.rate > 0) {
+            appendLatency(text, "from intended send time", result.responseTime);
+        } else {
+            // Un cliente de ciclo cerrado espera a cada respuesta: se corrige con el intervalo tipico
+            long expected = result.serviceTime.percentile(50);
+            appendLatency(text, "corrected, interval " + expected + " us", result.serviceTime.corrected(expected));
+        }
+        return text.toString();
+    }
+
+    private static void appendLatency(StringBuilder text, String name, LatencyHistogram histogram) {
+        text.append(String.format(Locale.ROOT, "  %-32s %9.0f %9d %9d %9d %9d %9d%n", name, histogram.getMean(),
+                histogram.percentile(50), histogram.percentile(90), histogram.percentile(99),
+                histogram.percentile(99.9), histogram.getMax()));
+    }
+}
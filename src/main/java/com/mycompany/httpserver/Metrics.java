@@ -0,0 +1,168 @@
+package com.mycompany.httpserver;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The request metrics of the server: one RequestMetrics for each route and
+ * method, one for each type of static file, one for the admin endpoints like
+ * the metrics themselves and one for the requests that found nothing. The metrics of a route are kept when the route is
+ * registered again. They are written in the text format of Prometheus.
+ *
+ * @author sebastian.cardona-p
+ */
+final class Metrics {
+
+    static final int HTML = 0;
+    static final int CSS = 1;
+    static final int JAVASCRIPT = 2;
+    static final int IMAGE = 3;
+    private static final String[] STATIC_HANDLERS = {"static/html", "static/css", "static/javascript", "static/image"};
+
+    private final Map<String, RequestMetrics> routes = new TreeMap<>();
+    private final RequestMetrics[] staticFiles = new RequestMetrics[STATIC_HANDLERS.length];
+    private final RequestMetrics admin = new RequestMetrics("admin");
+    private final RequestMetrics notFound = new RequestMetrics("not_found");
+
+    Metrics() {
+        for (int i = 0; i < staticFiles.length; i++) {
+            staticFiles[i] = new RequestMetrics(STATIC_HANDLERS[i]);
+        }
+    }
+
+    /**
+     * @param method
+     * @param pattern the route as it was registered
+     * @return the metrics of the route, created the first time
+     */
+    synchronized RequestMetrics route(String method, String pattern) {
+        return routes.computeIfAbsent(method + " " + pattern, k -> new RequestMetrics(pattern));
+    }
+
+    /**
+     * @param type HTML, CSS, JAVASCRIPT or IMAGE
+     * @return the metrics of that type of static file
+     */
+    RequestMetrics staticFile(int type) {
+        return staticFiles[type];
+    }
+
+    /**
+     * @return the metrics of the requests to the admin endpoints of the
+     * server
+     */
+    RequestMetrics admin() {
+        return admin;
+    }
+
+    /**
+     * @return the metrics of the requests without a file or route
+     */
+    RequestMetrics notFound() {
+        return notFound;
+    }
+
+    /**
+     * Write the request counters and histograms
+     *
+     * @param text
+     */
+    synchronized void write(StringBuilder text) {
+        header(text, "http_server_responses_total", "counter", "Responses by handler and status class");
+        forEach((method, handler, metrics) -> {
+            for (int statusClass = 1; statusClass <= 5; statusClass++) {
+                long count = metrics.responses(statusClass);
+                if (count > 0) {
+                    labels(text.append("http_server_responses_total"), method, handler)
+                            .append(",status=\"").append(statusClass).append("xx\"} ").append(count).append('\n');
+                }
+            }
+        });
+
+        header(text, "http_server_request_duration_seconds", "histogram",
+                "Time from the parsed request until its response is written");
+        forEach((method, handler, metrics) -> {
+            long[] buckets = metrics.buckets();
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i];
+                labels(text.append("http_server_request_duration_seconds_bucket"), method, handler)
+                        .append(",le=\"").append(RequestMetrics.bound(i)).append("\"} ").append(cumulative).append('\n');
+            }
+            labels(text.append("http_server_request_duration_seconds_sum"), method, handler)
+                    .append("} ").append(metrics.sumNanos() / 1e9).append('\n');
+            labels(text.append("http_server_request_duration_seconds_count"), method, handler)
+                    .append("} ").append(cumulative).append('\n');
+        });
+    }
+
+    /**
+     * Write the HELP and TYPE lines of a metric
+     *
+     * @param text
+     * @param name
+     * @param type counter, gauge or histogram
+     * @param help
+     */
+    static void header(StringBuilder text, String name, String type, String help) {
+        text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Write a sample with one label
+     *
+     * @param text
+     * @param name
+     * @param label name of the label, null for a sample without labels
+     * @param value value of the label
+     * @param sample
+     */
+    static void sample(StringBuilder text, String name, String label, String value, long sample) {
+        text.append(name);
+        if (label != null) {
+            text.append('{').append(label).append("=\"");
+            escape(text, value).append("\"}");
+        }
+        text.append(' ').append(sample).append('\n');
+    }
+
+    private interface MetricsConsumer {
+
+        void accept(String method, String handler, RequestMetrics metrics);
+    }
+
+    private void forEach(MetricsConsumer consumer) {
+        for (Map.Entry<String, RequestMetrics> route : routes.entrySet()) {
+            String key = route.getKey();
+            int space = key.indexOf(' ');
+            consumer.accept(key.substring(0, space), key.substring(space + 1), route.getValue());
+        }
+        // Los archivos estaticos solo responden GET y HEAD
+        for (int i = 0; i < staticFiles.length; i++) {
+            consumer.accept("GET", STATIC_HANDLERS[i], staticFiles[i]);
+        }
+        // Los endpoints de administracion responden a cualquier metodo
+        consumer.accept("", "admin", admin);
+        consumer.accept("", "not_found", notFound);
+    }
+
+    private static StringBuilder labels(StringBuilder text, String method, String handler) {
+        text.append("{method=\"").append(method).append("\",handler=\"");
+        return escape(text, handler).append('"');
+    }
+
+    private static StringBuilder escape(StringBuilder text, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                text.append('\\').append(c);
+            } else if (c == '\n') {
+                text.append("\\n");
+            } else {
+                text.append(c);
+            }
+        }
+        return text;
+    }
+}
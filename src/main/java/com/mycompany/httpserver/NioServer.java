@@ -0,0 +1,924 @@
+package com.mycompany.httpserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Non blocking server engine. One acceptor thread hands the accepted
+ * connections to N reactor threads, each one with its own Selector, that run
+ * the same parse, route and write pipeline as the ServerSocket loop. With
+ * several listeners on the same port each reactor accepts the connections of
+ * its own listeners, so a connection stays on the core where the kernel
+ * delivered it.
+ *
+ * An idle connection only holds its SelectionKey and a small attachment, the
+ * read buffer is shared by all the connections of a reactor. A connection
+ * waiting for an asynchronous service stops reading until the reactor
+ * writes its response, without holding any thread. Synchronous services run
+ * in virtual threads and the reactor sends their bytes while they write. The
+ * deadlines of the connections of a reactor are kept in a timing wheel that
+ * the reactor advances in its loop.
+ *
+ * @author sebastian.cardona-p
+ */
+class NioServer {
+
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    // El reactor guarda el cuerpo completo en memoria antes de atender la solicitud
+    private static final int MAX_BODY_SIZE = 1024 * 1024;
+    // Bytes de solicitudes incompletas que un reactor guarda entre todas sus
+    // conexiones, una conexion que lo supera recibe un 503
+    private static final long MAX_BUFFERED_BYTES = 64L * 1024 * 1024;
+    // Un servicio que corre fuera del reactor entrega su cuerpo en partes de
+    // este tamano y espera mientras el socket no acepta mas que el limite
+    private static final int STREAM_PART_SIZE = 64 * 1024;
+    private static final int STREAM_LIMIT = 256 * 1024;
+    private static final ExecutorService SERVICE_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final ServerSocketChannel[] listeners;
+    private final Reactor[] reactors;
+    private final int keepAliveTimeout;
+    private final int maxKeepAliveRequests;
+    private final long maxBufferedBytes;
+
+    /**
+     * @param listeners bound channels, more than one share the port with
+     * SO_REUSEPORT
+     * @param reactorThreads
+     * @param keepAliveTimeout
+     * @param maxKeepAliveRequests
+     */
+    NioServer(ServerSocketChannel[] listeners, int reactorThreads, int keepAliveTimeout, int maxKeepAliveRequests) {
+        this(listeners, reactorThreads, keepAliveTimeout, maxKeepAliveRequests, MAX_BUFFERED_BYTES);
+    }
+
+    /**
+     * @param listeners bound channels, more than one share the port with
+     * SO_REUSEPORT
+     * @param reactorThreads
+     * @param keepAliveTimeout
+     * @param maxKeepAliveRequests
+     * @param maxBufferedBytes bytes of incomplete requests each reactor keeps
+     * for all its connections
+     */
+    NioServer(ServerSocketChannel[] listeners, int reactorThreads, int keepAliveTimeout, int maxKeepAliveRequests, long maxBufferedBytes) {
+        this.listeners = listeners;
+        this.reactors = new Reactor[reactorThreads];
+        this.keepAliveTimeout = keepAliveTimeout;
+        this.maxKeepAliveRequests = maxKeepAliveRequests;
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Start the reactors and accept connections until the listeners are
+     * closed
+     *
+     * @throws IOException
+     */
+    void start() throws IOException {
+        for (int i = 0; i < reactors.length; i++) {
+            reactors[i] = new Reactor();
+        }
+        if (listeners.length > 1) {
+            // Cada reactor acepta de sus listeners, el primero corre en este hilo
+            for (int i = 0; i < listeners.length; i++) {
+                reactors[i % reactors.length].listen(listeners[i], i);
+            }
+            for (int i = 1; i < reactors.length; i++) {
+                startReactor(i);
+            }
+            reactors[0].run();
+            return;
+        }
+        for (int i = 0; i < reactors.length; i++) {
+            startReactor(i);
+        }
+        ServerSocketChannel serverChannel = listeners[0];
+
+        // El acceptor reparte las conexiones entre los reactores en round robin
+        int next = 0;
+        while (serverChannel.isOpen()) {
+            SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (IOException e) {
+                System.err.println("Accept failed.");
+                break;
+            }
+            HttpServer.accepted(0);
+            channel.configureBlocking(false);
+            reactors[next].register(channel, HttpEvents.startAccept());
+            next = (next + 1) % reactors.length;
+        }
+    }
+
+    private void startReactor(int index) {
+        Thread reactorThread = new Thread(reactors[index], "nio-reactor-" + index);
+        reactorThread.setDaemon(true);
+        reactorThread.start();
+    }
+
+    /**
+     * State of one connection between selector wake ups
+     */
+    private static final class Connection {
+
+        // Bytes received that are not a complete request yet, null while idle
+        byte[] pending;
+        int pendingLength;
+        // The queue of the connection while it has responses to write, null while idle
+        ResponseQueue response;
+        ResponseQueue responses;
+        boolean closeAfterWrite;
+        // true when the headers of the pending request arrived but not its body
+        boolean bodyPending;
+        int served;
+        ConnectionTimer timer;
+        final HttpRequest request = new HttpRequest();
+    }
+
+    /**
+     * Responses of a connection waiting to be written. The bytes written to
+     * it are kept in memory and the files are sent with transferTo when the
+     * socket accepts them, so a large file never goes through the heap. Each
+     * connection reuses its queue for all its requests. While
+     * a service writes in another thread the bytes are handed to the reactor
+     * in parts and the service waits when too many of them are not sent yet
+     */
+    private static final class ResponseQueue extends OutputStream implements FileTransferOutput, DeferredOutput {
+
+        // ByteBuffer o FilePart, en el orden en que se deben enviar
+        private final ArrayDeque<Object> parts = new ArrayDeque<>();
+        // Bytes escritos despues de la ultima parte, se entregan sin copiarlos
+        private byte[] bytes;
+        private int count;
+        private final Reactor reactor;
+        private final SelectionKey key;
+        // Respuesta de un servicio asincrono que todavia no termina
+        CompletableFuture<?> completion;
+        BooleanSupplier writer;
+        // Bytes enviados al socket, para los eventos de escritura
+        long written;
+        // Solo existen mientras otro hilo escribe en la cola
+        private ReentrantLock lock;
+        private Condition drained;
+        private boolean streaming;
+        private boolean closed;
+        // Bytes en memoria que el socket todavia no acepta
+        private long unsent;
+
+        ResponseQueue(Reactor reactor, SelectionKey key) {
+            this.reactor = reactor;
+            this.key = key;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (streaming) {
+                write(new byte[]{(byte) b}, 0, 1);
+                return;
+            }
+            ensureCapacity(1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!streaming) {
+                append(b, off, len);
+                return;
+            }
+            lock.lock();
+            try {
+                ensureOpen();
+                append(b, off, len);
+                if (count < STREAM_PART_SIZE) {
+                    return;
+                }
+                endBytes();
+                reactor.execute(() -> reactor.flush(key, this));
+                // El servicio espera a que el cliente lea, la memoria de la conexion queda acotada
+                while (unsent > STREAM_LIMIT && !closed) {
+                    drained.await();
+                }
+                ensureOpen();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void transferFile(Path file, long position, long count) throws IOException {
+            addFile(new FilePart(FileChannel.open(file, StandardOpenOption.READ), position, count));
+        }
+
+        @Override
+        public void transferTemporaryFile(Path file, long count) throws IOException {
+            // El archivo se borra al cerrar el canal, cuando se envio o cuando se cierra la conexion
+            addFile(new FilePart(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE), 0, count));
+        }
+
+        private void addFile(FilePart file) throws IOException {
+            if (!streaming) {
+                endBytes();
+                parts.add(file);
+                return;
+            }
+            lock.lock();
+            try {
+                if (closed) {
+                    file.channel.close();
+                    ensureOpen();
+                }
+                endBytes();
+                parts.add(file);
+                reactor.execute(() -> reactor.flush(key, this));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void defer(CompletableFuture<?> completion, BooleanSupplier writer) {
+            this.completion = completion;
+            this.writer = writer;
+        }
+
+        @Override
+        public void dispatch(WorkerPool.Task task) {
+            startStreaming();
+            CompletableFuture<Boolean> handled = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return task.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, SERVICE_THREADS);
+            defer(handled, handled::join);
+        }
+
+        /**
+         * Let another thread write in the queue, called by the reactor before
+         * handing the request to it
+         */
+        void startStreaming() {
+            if (lock == null) {
+                lock = new ReentrantLock();
+                drained = lock.newCondition();
+            }
+            streaming = true;
+        }
+
+        /**
+         * Called by the reactor when the thread that wrote in the queue
+         * finished
+         */
+        void endStreaming() {
+            streaming = false;
+        }
+
+        boolean isDeferred() {
+            return writer != null;
+        }
+
+        boolean isEmpty() {
+            return parts.isEmpty() && count == 0;
+        }
+
+        /**
+         * Write as much as the socket accepts without blocking
+         *
+         * @param channel
+         * @return true when everything was written
+         * @throws IOException
+         */
+        boolean writeTo(SocketChannel channel) throws IOException {
+            if (!streaming) {
+                return writeParts(channel);
+            }
+            lock.lock();
+            try {
+                return writeParts(channel);
+            } finally {
+                if (unsent <= STREAM_LIMIT) {
+                    drained.signalAll();
+                }
+                lock.unlock();
+            }
+        }
+
+        private boolean writeParts(SocketChannel channel) throws IOException {
+            endBytes();
+            while (!parts.isEmpty()) {
+                Object part = parts.peek();
+                if (part instanceof ByteBuffer) {
+                    ByteBuffer buffer = (ByteBuffer) part;
+                    int sent = channel.write(buffer);
+                    written += sent;
+                    unsent -= sent;
+                    if (buffer.hasRemaining()) {
+                        return false;
+                    }
+                } else {
+                    FilePart file = (FilePart) part;
+                    long sent = file.channel.transferTo(file.position, file.remaining, channel);
+                    if (sent <= 0 && file.position >= file.channel.size()) {
+                        throw new EOFException("File shorter than its Content-Length");
+                    }
+                    file.position += sent;
+                    file.remaining -= sent;
+                    written += Math.max(sent, 0);
+                    if (file.remaining > 0) {
+                        return false;
+                    }
+                    file.channel.close();
+                }
+                parts.poll();
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            if (!streaming) {
+                closeParts();
+                return;
+            }
+            lock.lock();
+            try {
+                // El servicio que espera recibe un IOException en su siguiente escritura
+                closed = true;
+                drained.signalAll();
+                closeParts();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void closeParts() {
+            for (Object part : parts) {
+                if (part instanceof FilePart) {
+                    try {
+                        ((FilePart) part).channel.close();
+                    } catch (IOException ex) {
+                        System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+                    }
+                }
+            }
+            parts.clear();
+        }
+
+        private void ensureOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Connection closed");
+            }
+        }
+
+        private void append(byte[] b, int off, int len) {
+            ensureCapacity(len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int len) {
+            if (bytes == null) {
+                bytes = new byte[Math.max(len, 512)];
+            } else if (bytes.length - count < len) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, count + len));
+            }
+        }
+
+        private void endBytes() {
+            if (count > 0) {
+                // El arreglo pasa a la parte, una conexion ociosa no guarda ningun buffer
+                parts.add(ByteBuffer.wrap(bytes, 0, count));
+                unsent += count;
+                bytes = null;
+                count = 0;
+            }
+        }
+    }
+
+    /**
+     * Body of a request that is already in memory. It can move to a copy of
+     * the bytes when the buffer where it arrived is going to be reused
+     */
+    private static final class RequestBody extends ByteArrayInputStream {
+
+        RequestBody(byte[] data, int offset, int length) {
+            super(data, offset, length);
+        }
+
+        /**
+         * @param copy the same bytes at the same offsets
+         */
+        void rebase(byte[] copy) {
+            buf = copy;
+        }
+    }
+
+    /**
+     * Part of a file that is still being sent
+     */
+    private static final class FilePart {
+
+        final FileChannel channel;
+        long position;
+        long remaining;
+
+        FilePart(FileChannel channel, long position, long remaining) {
+            this.channel = channel;
+            this.position = position;
+            this.remaining = remaining;
+        }
+    }
+
+    /**
+     * Selector loop that reads, handles and writes the connections assigned
+     * to it
+     */
+    private final class Reactor implements Runnable {
+
+        private final Selector selector;
+        private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final byte[] readBytes = new byte[READ_BUFFER_SIZE];
+        private final ByteBuffer readBuffer = ByteBuffer.wrap(readBytes);
+        private final TimingWheel timers = new TimingWheel(HttpServer.TIMER_TICK_MILLIS, HttpServer.TIMER_SLOTS);
+        // Bytes de solicitudes incompletas de todas las conexiones
+        private long buffered;
+
+        Reactor() throws IOException {
+            selector = Selector.open();
+        }
+
+        /**
+         * Accept the connections of a listener in this reactor, before the
+         * reactor starts
+         *
+         * @param listener
+         * @param index index of the listener, for its connection count
+         * @throws IOException
+         */
+        void listen(ServerSocketChannel listener, int index) throws IOException {
+            listener.configureBlocking(false);
+            listener.register(selector, SelectionKey.OP_ACCEPT, index);
+        }
+
+        /**
+         * Add a connection accepted by another thread
+         *
+         * @param channel
+         * @param event accept event of the connection, null if it is not
+         * recorded
+         */
+        void register(SocketChannel channel, HttpEvents.Accept event) {
+            newChannels.add(channel);
+            if (event != null) {
+                // El evento termina cuando el reactor registra la conexion
+                execute(() -> HttpEvents.accepted(event, 0));
+                return;
+            }
+            selector.wakeup();
+        }
+
+        /**
+         * Run a task in the reactor thread, it can be called from any thread
+         *
+         * @param task
+         */
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (selector.isOpen()) {
+                    selector.select(timers.getTickMillis());
+                    registerNewChannels();
+                    runTasks();
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.channel() instanceof ServerSocketChannel) {
+                            accept(key);
+                            continue;
+                        }
+                        try {
+                            if (!key.isValid()) {
+                                continue;
+                            }
+                            if (key.isReadable()) {
+                                read(key);
+                            } else if (key.isWritable()) {
+                                write(key);
+                            }
+                        } catch (IOException | RuntimeException ex) {
+                            close(key);
+                            System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+                        }
+                    }
+                    timers.advance(System.currentTimeMillis());
+                }
+            } catch (IOException | ClosedSelectorException ex) {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        }
+
+        private void registerNewChannels() throws IOException {
+            SocketChannel channel;
+            while ((channel = newChannels.poll()) != null) {
+                open(channel);
+            }
+        }
+
+        /**
+         * Accept every pending connection of a listener
+         */
+        private void accept(SelectionKey key) {
+            ServerSocketChannel listener = (ServerSocketChannel) key.channel();
+            try {
+                SocketChannel channel;
+                while ((channel = listener.accept()) != null) {
+                    HttpEvents.Accept event = HttpEvents.startAccept();
+                    HttpServer.accepted((Integer) key.attachment());
+                    channel.configureBlocking(false);
+                    open(channel);
+                    HttpEvents.accepted(event, (Integer) key.attachment());
+                }
+            } catch (IOException ex) {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        }
+
+        private void open(SocketChannel channel) throws IOException {
+            Connection connection = new Connection();
+            connection.request.setRemoteAddress(channel.socket().getInetAddress().getHostAddress());
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ, connection);
+            connection.responses = new ResponseQueue(this, key);
+            connection.timer = new ConnectionTimer(timers, type -> expire(key, type), false);
+            connection.timer.expect(TimeoutType.IDLE, keepAliveTimeout);
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        /**
+         * Start the read deadline of the next request: idle if nothing of it
+         * arrived, otherwise the one of its headers or its body. The header
+         * and body deadlines are kept while the rest of the request arrives
+         */
+        private void waitForRequest(Connection connection) {
+            if (connection.pending == null) {
+                connection.timer.expect(TimeoutType.IDLE, keepAliveTimeout);
+            } else if (connection.bodyPending) {
+                connection.timer.enter(TimeoutType.BODY_READ, HttpServer.bodyReadTimeout());
+            } else {
+                connection.timer.enter(TimeoutType.HEADER_READ, HttpServer.headerReadTimeout());
+            }
+        }
+
+        private void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+
+            readBuffer.clear();
+            int read = channel.read(readBuffer);
+            if (read < 0) {
+                close(key);
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+
+            // Lo normal es que la solicitud llegue en una sola lectura, en ese
+            // caso se procesa desde el buffer compartido sin copiarla
+            byte[] data = readBytes;
+            int length = read;
+            if (connection.pending != null) {
+                append(connection, readBytes, 0, read);
+                data = connection.pending;
+                length = connection.pendingLength;
+            }
+            // Solo se lee cuando la conexion no tiene respuestas pendientes, su cola esta libre
+            process(key, connection, data, length, connection.responses);
+        }
+
+        /**
+         * Handle the complete requests in data and start writing their
+         * responses. It stops at the first request that waits for an
+         * asynchronous service
+         */
+        private void process(SelectionKey key, Connection connection, byte[] data, int length, ResponseQueue responses) throws IOException {
+            // Las solicitudes en pipeline se responden en orden en una sola escritura
+            int offset = 0;
+            try {
+                while (!connection.closeAfterWrite && !responses.isDeferred()) {
+                    int consumed = handle(data, offset, length, connection, responses);
+                    if (consumed == 0) {
+                        break;
+                    }
+                    offset += consumed;
+                }
+            } catch (IOException | RuntimeException e) {
+                responses.close();
+                throw e;
+            }
+
+            // Guardar lo que queda de una solicitud incompleta
+            int remaining = length - offset;
+            if (remaining == 0 || connection.closeAfterWrite) {
+                setPending(connection, null, 0);
+            } else if (data == readBytes || offset > 0) {
+                byte[] rest = new byte[Math.max(remaining, 1024)];
+                System.arraycopy(data, offset, rest, 0, remaining);
+                setPending(connection, rest, remaining);
+            }
+            if (connection.pendingLength > HttpRequestParser.maxHeaderSize() + MAX_BODY_SIZE) {
+                close(key);
+                return;
+            }
+            if (connection.pending != null && buffered > maxBufferedBytes) {
+                // Muchos clientes lentos no pueden ocupar memoria sin limite
+                setPending(connection, null, 0);
+                if (responses.isDeferred()) {
+                    close(key);
+                    return;
+                }
+                HttpServer.sendOverloaded(responses);
+                connection.closeAfterWrite = true;
+            }
+            if (offset > 0) {
+                // La siguiente solicitud tiene sus propios plazos
+                connection.timer.clearRead();
+            }
+
+            if (responses.isDeferred()) {
+                // No se leen mas solicitudes hasta escribir la respuesta pendiente
+                connection.timer.clearRead();
+                connection.response = responses;
+                key.interestOps(0);
+                responses.completion.whenComplete((result, error) -> execute(() -> resume(key)));
+                return;
+            }
+            if (responses.isEmpty()) {
+                connection.response = null;
+                key.interestOps(SelectionKey.OP_READ);
+                waitForRequest(connection);
+                return;
+            }
+            connection.response = responses;
+            key.interestOps(SelectionKey.OP_WRITE);
+            write(key);
+        }
+
+        /**
+         * Write the response of an asynchronous service that completed and
+         * handle the requests that arrived after it
+         */
+        private void resume(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            Connection connection = (Connection) key.attachment();
+            ResponseQueue responses = connection.response;
+            BooleanSupplier writer = responses.writer;
+            responses.completion = null;
+            responses.writer = null;
+            responses.endStreaming();
+            try {
+                connection.closeAfterWrite = !writer.getAsBoolean();
+                if (connection.pending != null && !connection.closeAfterWrite) {
+                    process(key, connection, connection.pending, connection.pendingLength, responses);
+                } else {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    write(key);
+                }
+            } catch (IOException | RuntimeException ex) {
+                close(key);
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        }
+
+        /**
+         * Handle the first complete request in data
+         *
+         * @return the bytes used by the request or 0 if it is not complete yet
+         */
+        private int handle(byte[] data, int offset, int length, Connection connection, ResponseQueue responses) throws IOException {
+            HttpRequest request = connection.request;
+            long bodyLimit = Math.min(HttpServer.maxBodySize(), MAX_BODY_SIZE);
+            int bodyEnd;
+            RequestBody body;
+            try {
+                connection.bodyPending = false;
+                int headerEnd = HttpRequestParser.parse(data, offset, length, request);
+                if (headerEnd == HttpRequestParser.NEED_MORE) {
+                    return 0;
+                }
+                connection.bodyPending = true;
+
+                // El reactor no puede bloquearse leyendo, se espera a tener el cuerpo completo
+                if (request.isChunked()) {
+                    bodyEnd = ChunkedInputStream.findEnd(data, headerEnd, length, bodyLimit);
+                    if (bodyEnd < 0) {
+                        return 0;
+                    }
+                } else {
+                    long contentLength = Math.max(request.getLongHeader("Content-Length"), 0);
+                    if (contentLength > bodyLimit) {
+                        throw new HttpParseException(413, "Payload Too Large");
+                    }
+                    if (length - headerEnd < contentLength) {
+                        return 0;
+                    }
+                    bodyEnd = headerEnd + (int) contentLength;
+                }
+                body = new RequestBody(data, headerEnd, bodyEnd - headerEnd);
+                HttpServer.requestBody(request, body);
+                HttpServer.debugRequest(request);
+            } catch (HttpParseException e) {
+                HttpServer.sendError(responses, e.getStatus(), e.getReason());
+                connection.closeAfterWrite = true;
+                return length - offset;
+            } catch (NumberFormatException e) {
+                HttpServer.sendError(responses, 400, "Bad Request");
+                connection.closeAfterWrite = true;
+                return length - offset;
+            }
+
+            connection.served++;
+            boolean keepAlive = connection.served < maxKeepAliveRequests && HttpServer.isKeepAlive(request);
+            WorkerPool pool = HttpServer.workerPool();
+            if (pool != null) {
+                // El worker lee la solicitud mientras el reactor sigue con otras conexiones
+                ownBytes(data, bodyEnd, request, body);
+                responses.startStreaming();
+                CompletableFuture<Boolean> handled = pool.submit(() -> HttpServer.handlerequestType(request, responses, keepAlive, null),
+                        () -> HttpServer.sendOverloaded(responses));
+                if (handled == null) {
+                    responses.endStreaming();
+                    connection.closeAfterWrite = !HttpServer.sendOverloaded(responses);
+                } else {
+                    connection.closeAfterWrite = !keepAlive;
+                    responses.defer(handled, handled::join);
+                }
+                return bodyEnd - offset;
+            }
+
+            connection.closeAfterWrite = !HttpServer.handlerequestType(request, responses, keepAlive);
+            if (responses.isDeferred()) {
+                ownBytes(data, bodyEnd, request, body);
+            }
+            return bodyEnd - offset;
+        }
+
+        /**
+         * The buffer of the reactor is reused by the next read, a request that
+         * is still being handled needs its own bytes
+         */
+        private void ownBytes(byte[] data, int bodyEnd, HttpRequest request, RequestBody body) {
+            if (data == readBytes) {
+                byte[] copy = Arrays.copyOf(data, bodyEnd);
+                request.copyBuffer(copy);
+                body.rebase(copy);
+            }
+        }
+
+        private void write(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            Connection connection = (Connection) key.attachment();
+            HttpEvents.SocketWrite event = new HttpEvents.SocketWrite();
+            event.begin();
+            long before = connection.response.written;
+            boolean done = connection.response.writeTo(channel);
+            event.end();
+            if (event.shouldCommit()) {
+                event.bytes = connection.response.written - before;
+                event.commit();
+            }
+            if (!done) {
+                // El plazo se reinicia cada vez que el cliente acepta mas bytes
+                connection.timer.startWrite();
+                return;
+            }
+            connection.timer.endWrite();
+            if (connection.response.isDeferred()) {
+                // El servicio sigue escribiendo en otro hilo
+                key.interestOps(0);
+                return;
+            }
+            connection.response = null;
+            if (connection.closeAfterWrite) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+                waitForRequest(connection);
+            }
+        }
+
+        /**
+         * Send the bytes that a service running in another thread left in the
+         * queue of a connection
+         */
+        private void flush(SelectionKey key, ResponseQueue responses) {
+            if (!key.isValid() || ((Connection) key.attachment()).response != responses || !responses.isDeferred()) {
+                return;
+            }
+            try {
+                key.interestOps(SelectionKey.OP_WRITE);
+                write(key);
+            } catch (IOException | RuntimeException ex) {
+                close(key);
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        }
+
+        /**
+         * Replace the bytes of the incomplete request of a connection, keeping
+         * the count of the bytes buffered by the reactor
+         */
+        private void setPending(Connection connection, byte[] pending, int length) {
+            buffered += (pending == null ? 0 : pending.length) - (connection.pending == null ? 0 : connection.pending.length);
+            connection.pending = pending;
+            connection.pendingLength = length;
+        }
+
+        private void append(Connection connection, byte[] data, int offset, int read) {
+            if (connection.pending.length < connection.pendingLength + read) {
+                byte[] grown = new byte[Math.max(connection.pending.length * 2, connection.pendingLength + read)];
+                System.arraycopy(connection.pending, 0, grown, 0, connection.pendingLength);
+                setPending(connection, grown, connection.pendingLength);
+            }
+            System.arraycopy(data, offset, connection.pending, connection.pendingLength, read);
+            connection.pendingLength += read;
+        }
+
+        /**
+         * Close a connection whose deadline passed. A client that does not
+         * read its response gets a reset, so the unsent bytes are discarded
+         */
+        private void expire(SelectionKey key, TimeoutType type) {
+            if (type == TimeoutType.WRITE) {
+                try {
+                    ((SocketChannel) key.channel()).setOption(StandardSocketOptions.SO_LINGER, 0);
+                } catch (IOException ex) {
+                    System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+                }
+            }
+            close(key);
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            Connection connection = (Connection) key.attachment();
+            connection.timer.stop();
+            setPending(connection, null, 0);
+            if (connection.response != null) {
+                connection.response.close();
+            }
+            try {
+                key.channel().close();
+            } catch (IOException ex) {
+                System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+            }
+        }
+    }
+}
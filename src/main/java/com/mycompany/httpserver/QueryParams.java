@@ -0,0 +1,127 @@
+package com.mycompany.httpserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parameters of a query string, parsed once and kept in two parallel arrays
+ * in the order they appear. Names and values are percent decoded, a "+"
+ * stays as it is. The object is reused by every request of a connection.
+ *
+ * @author sebastian.cardona-p
+ */
+final class QueryParams {
+
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+    private int count;
+
+    /**
+     * Parse the raw, not decoded, query
+     *
+     * @param buf
+     * @param start
+     * @param end
+     */
+    void parse(byte[] buf, int start, int end) {
+        count = 0;
+        int pos = start;
+        while (pos < end) {
+            int paramEnd = pos;
+            int equals = -1;
+            while (paramEnd < end && buf[paramEnd] != '&') {
+                if (buf[paramEnd] == '=' && equals < 0) {
+                    equals = paramEnd;
+                }
+                paramEnd++;
+            }
+            if (paramEnd > pos) {
+                int nameEnd = equals < 0 ? paramEnd : equals;
+                add(HttpRequest.decode(buf, pos, nameEnd), equals < 0 ? "" : HttpRequest.decode(buf, equals + 1, paramEnd));
+            }
+            pos = paramEnd + 1;
+        }
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    private void add(String name, String value) {
+        if (count == names.length) {
+            String[] grownNames = new String[count * 2];
+            String[] grownValues = new String[count * 2];
+            System.arraycopy(names, 0, grownNames, 0, count);
+            System.arraycopy(values, 0, grownValues, 0, count);
+            names = grownNames;
+            values = grownValues;
+        }
+        names[count] = name;
+        values[count] = value;
+        count++;
+    }
+
+    /**
+     * @param name
+     * @return the last value of the parameter or null if it is not in the
+     * query
+     */
+    String get(String name) {
+        for (int i = count - 1; i >= 0; i--) {
+            if (names[i].equals(name)) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param name
+     * @return every value of the parameter in order, empty if it is not in
+     * the query
+     */
+    List<String> getAll(String name) {
+        List<String> all = null;
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) {
+                if (all == null) {
+                    all = new ArrayList<>(2);
+                }
+                all.add(values[i]);
+            }
+        }
+        return all == null ? Collections.emptyList() : all;
+    }
+
+    /**
+     * The parameters sorted by name and then by value, joined like a query.
+     * Two queries with the same parameters in a different order give the
+     * same text
+     *
+     * @return the normalized query, empty if it has no parameters
+     */
+    String normalized() {
+        if (count == 0) {
+            return "";
+        }
+        String[] pairs = new String[count];
+        for (int i = 0; i < count; i++) {
+            pairs[i] = escape(names[i]) + "=" + escape(values[i]);
+        }
+        Arrays.sort(pairs);
+        return String.join("&", pairs);
+    }
+
+    /**
+     * Encode again the characters that separate the parameters, so a decoded
+     * value can not look like two parameters
+     */
+    private static String escape(String text) {
+        if (text.indexOf('%') < 0 && text.indexOf('&') < 0 && text.indexOf('=') < 0) {
+            return text;
+        }
+        return text.replace("%", "%25").replace("&", "%26").replace("=", "%3D");
+    }
+}
@@ -0,0 +1,178 @@
+package com.mycompany.httpserver;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket of a route for each client IP. A bucket is a single AtomicLong
+ * with the time at which it will be full again, so taking a token is one
+ * compare and set without locks.
+ *
+ * The buckets are spread over several maps by the hash of the IP, each one
+ * with a limit so the memory stays bounded with any number of distinct IPs.
+ * A new client of a full map always gets its own bucket: a few of the oldest
+ * buckets of the map are looked at and the one closest to being full is
+ * removed, since forgetting it loses the least. A bucket that is already full
+ * is the same as a new one and is removed first. So a client that rotates
+ * its address only evicts other one-request buckets, it never makes the
+ * legitimate new clients share a bucket with it.
+ *
+ * @author sebastian.cardona-p
+ */
+final class RateLimiter {
+
+    private static final int STRIPES = 16;
+    private static final int DEFAULT_MAX_BUCKETS = 64 * 1024;
+    // Cubos que se comparan para elegir cual se descarta
+    private static final int EVICTION_SAMPLE = 8;
+
+    private static final class Stripe {
+
+        final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        // Las IPs de los cubos, de la mas antigua a la mas nueva
+        final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+    }
+
+    private final int burst;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final int maxBucketsPerStripe;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param permitsPerSecond requests per second of each client
+     * @param burst requests a client can send at once after being idle
+     */
+    RateLimiter(double permitsPerSecond, int burst) {
+        this(permitsPerSecond, burst, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param permitsPerSecond requests per second of each client
+     * @param burst requests a client can send at once after being idle
+     * @param maxBuckets buckets kept at once
+     */
+    RateLimiter(double permitsPerSecond, int burst, int maxBuckets) {
+        if (permitsPerSecond <= 0 || burst <= 0 || maxBuckets <= 0) {
+            throw new IllegalArgumentException("rate limits must be positive");
+        }
+        this.burst = burst;
+        this.intervalNanos = Math.max(1, (long) (1_000_000_000L / permitsPerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.maxBucketsPerStripe = Math.max(1, maxBuckets / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Take a token of the client
+     *
+     * @param client IP of the client, may be null
+     * @param now System.nanoTime()
+     * @return 0 if the request is allowed, or the nanoseconds until the
+     * client gets a new token
+     */
+    long acquire(String client, long now) {
+        String key = client == null ? "" : client;
+        Stripe stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        AtomicLong bucket = bucket(stripe, key, now);
+        while (true) {
+            long full = bucket.get();
+            // El cubo se llena a razon de un token por intervalo
+            long next = (full - now > 0 ? full : now) + intervalNanos;
+            long wait = next - now - burstNanos;
+            if (wait > 0) {
+                rejected.increment();
+                return wait;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong bucket(Stripe stripe, String key, long now) {
+        AtomicLong bucket = stripe.buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (stripe.buckets.size() >= maxBucketsPerStripe) {
+            evict(stripe, now);
+        }
+        AtomicLong created = new AtomicLong(now);
+        bucket = stripe.buckets.putIfAbsent(key, created);
+        if (bucket != null) {
+            return bucket;
+        }
+        stripe.order.add(key);
+        return created;
+    }
+
+    /**
+     * Remove one bucket of a full map: the first full one among the oldest
+     * buckets, or the one of them that is closest to being full. The others
+     * go back to the end of the queue
+     */
+    private void evict(Stripe stripe, long now) {
+        String[] sample = new String[EVICTION_SAMPLE];
+        int count = 0;
+        int victim = -1;
+        long victimFull = 0;
+        // Las IPs que ya no tienen cubo se descartan sin contarlas, con un tope
+        for (int polled = 0; count < EVICTION_SAMPLE && polled < 4 * EVICTION_SAMPLE; polled++) {
+            String key = stripe.order.poll();
+            if (key == null) {
+                break;
+            }
+            AtomicLong bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            long full = bucket.get();
+            if (full - now <= 0) {
+                // Un cubo lleno es igual a uno nuevo, no se pierde nada
+                stripe.buckets.remove(key, bucket);
+                victim = -1;
+                break;
+            }
+            if (victim < 0 || full - victimFull < 0) {
+                victim = count;
+                victimFull = full;
+            }
+            sample[count++] = key;
+        }
+        for (int i = 0; i < count; i++) {
+            if (i == victim) {
+                stripe.buckets.remove(sample[i]);
+            } else {
+                stripe.order.add(sample[i]);
+            }
+        }
+    }
+
+    int getBurst() {
+        return burst;
+    }
+
+    /**
+     * @return requests rejected since the limiter was created
+     */
+    long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return clients that have their own bucket
+     */
+    int getBucketCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            count += stripe.buckets.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,153 @@
+package com.mycompany.httpserver;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Requests of one route or one type of static file: a histogram of the time
+ * to handle them and the responses by status class.
+ *
+ * The histogram has fixed log-linear buckets, two for each power of two from
+ * 64 microseconds to 33 seconds, so a request is recorded in its bucket with
+ * a shift and without searching. The counters are spread over several
+ * stripes of one AtomicLongArray, each thread records in the stripe of its
+ * id, so recording is two atomic additions without locks or allocation and
+ * the threads rarely share a cache line. Reading adds the stripes.
+ *
+ * @author sebastian.cardona-p
+ */
+final class RequestMetrics {
+
+    private static final int FIRST_POWER = 6;
+    private static final int LAST_POWER = 25;
+    /**
+     * Buckets of the histogram, the last one has the requests slower than
+     * every bound
+     */
+    static final int BUCKETS = 2 * (LAST_POWER - FIRST_POWER) + 2;
+    private static final long[] BOUNDS_MICROS = new long[BUCKETS - 1];
+    private static final String[] BOUNDS_SECONDS = new String[BUCKETS - 1];
+
+    static {
+        BOUNDS_MICROS[0] = 1L << FIRST_POWER;
+        for (int i = 1; i < BOUNDS_MICROS.length; i++) {
+            int power = FIRST_POWER + (i - 1) / 2;
+            BOUNDS_MICROS[i] = (i - 1) % 2 == 0 ? 3L << (power - 1) : 1L << (power + 1);
+        }
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            BOUNDS_SECONDS[i] = BigDecimal.valueOf(BOUNDS_MICROS[i], 6).stripTrailingZeros().toPlainString();
+        }
+    }
+
+    private static final int SUM = BUCKETS;
+    private static final int STATUS = SUM + 1;
+    // Cada franja ocupa un multiplo de 64 bytes
+    private static final int STRIDE = (STATUS + 5 + 7) & ~7;
+    private static final int STRIPES = stripes();
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * STRIDE);
+    private final String name;
+
+    /**
+     * @param name the route pattern or the type of static file
+     */
+    RequestMetrics(String name) {
+        this.name = name;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * Record a request
+     *
+     * @param status status of its response, 0 if none was sent
+     * @param nanos time to handle it
+     */
+    void record(int status, long nanos) {
+        int base = stripe() * STRIDE;
+        counts.incrementAndGet(base + bucket(nanos / 1000));
+        counts.addAndGet(base + SUM, nanos);
+        int statusClass = status / 100;
+        if (statusClass >= 1 && statusClass <= 5) {
+            counts.incrementAndGet(base + STATUS + statusClass - 1);
+        }
+    }
+
+    /**
+     * @return requests in each bucket, not cumulative
+     */
+    long[] buckets() {
+        long[] result = new long[BUCKETS];
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            for (int i = 0; i < BUCKETS; i++) {
+                result[i] += counts.get(stripe * STRIDE + i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return time to handle every request
+     */
+    long sumNanos() {
+        return total(SUM);
+    }
+
+    /**
+     * @param statusClass 1 to 5, like 2 for the 2xx responses
+     * @return responses of that class
+     */
+    long responses(int statusClass) {
+        return total(STATUS + statusClass - 1);
+    }
+
+    /**
+     * @param bucket
+     * @return the highest latency of the bucket in seconds, like "0.000096",
+     * as the le label of Prometheus
+     */
+    static String bound(int bucket) {
+        return bucket < BOUNDS_SECONDS.length ? BOUNDS_SECONDS[bucket] : "+Inf";
+    }
+
+    /**
+     * @param micros
+     * @return the bucket of a latency
+     */
+    static int bucket(long micros) {
+        if (micros <= BOUNDS_MICROS[0]) {
+            return 0;
+        }
+        // Los limites son inclusivos, como le en Prometheus
+        long value = micros - 1;
+        int power = 63 - Long.numberOfLeadingZeros(value);
+        if (power >= LAST_POWER) {
+            return BUCKETS - 1;
+        }
+        int half = (int) (value >>> (power - 1)) & 1;
+        return 1 + 2 * (power - FIRST_POWER) + half;
+    }
+
+    private long total(int index) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += counts.get(stripe * STRIDE + index);
+        }
+        return sum;
+    }
+
+    private static int stripe() {
+        int hash = (int) Thread.currentThread().threadId() * 0x9E3779B9;
+        return (hash >>> 16) & (STRIPES - 1);
+    }
+
+    private static int stripes() {
+        int size = 1;
+        while (size < Math.min(Runtime.getRuntime().availableProcessors(), 64)) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,143 @@
+package com.mycompany.httpserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the requests of one blocking connection into a buffer that is reused
+ * for every request. The bytes of a pipelined request that arrive together
+ * with the previous one stay in the buffer until it is read.
+ *
+ * @author sebastian.cardona-p
+ */
+final class RequestReader {
+
+    private static final int MIN_FREE_SPACE = 2048;
+
+    private final InputStream in;
+    private byte[] buf = new byte[4096];
+    private int start;
+    private int end;
+    // End of the headers of the current request, they must not be moved
+    // while the request is handled
+    private int bodyStart;
+
+    private final InputStream stream = new InputStream() {
+        @Override
+        public int read() throws IOException {
+            if (start == end && !fill()) {
+                return -1;
+            }
+            return buf[start++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (start == end) {
+                // Las lecturas grandes van directo al socket sin pasar por el buffer
+                if (len >= buf.length - bodyStart) {
+                    return in.read(b, off, len);
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int read = Math.min(len, end - start);
+            System.arraycopy(buf, start, b, off, read);
+            start += read;
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return end - start > 0 ? end - start : in.available();
+        }
+    };
+
+    RequestReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Read and parse the request line and headers of the next request
+     *
+     * @param request filled with the offsets of the new request
+     * @return false if the client closed the connection before sending a new
+     * request
+     * @throws IOException if the connection fails or was closed by a timeout
+     * @throws HttpParseException if the request is not valid
+     */
+    boolean readHeaders(HttpRequest request) throws IOException, HttpParseException {
+        compact();
+        while (true) {
+            if (end > start) {
+                int headerEnd = HttpRequestParser.parse(buf, start, end, request);
+                if (headerEnd != HttpRequestParser.NEED_MORE) {
+                    start = headerEnd;
+                    bodyStart = headerEnd;
+                    return true;
+                }
+            }
+            if (end == buf.length) {
+                byte[] grown = new byte[Math.max(buf.length * 2, HttpRequestParser.maxHeaderSize())];
+                System.arraycopy(buf, 0, grown, 0, end);
+                buf = grown;
+            }
+
+            int read = in.read(buf, end, buf.length - end);
+            if (read < 0) {
+                return false;
+            }
+            end += read;
+        }
+    }
+
+    /**
+     * The bytes of the connection after the headers of the current request,
+     * the body streams read from here
+     *
+     * @return the stream
+     */
+    InputStream stream() {
+        return stream;
+    }
+
+    /**
+     * Read more bytes after the headers of the current request, reusing the
+     * space of the body bytes that were already consumed
+     *
+     * @return false at the end of the connection
+     */
+    private boolean fill() throws IOException {
+        start = bodyStart;
+        end = bodyStart;
+        if (buf.length - end < MIN_FREE_SPACE) {
+            byte[] grown = new byte[buf.length + MIN_FREE_SPACE];
+            System.arraycopy(buf, 0, grown, 0, end);
+            buf = grown;
+        }
+        int read = in.read(buf, end, buf.length - end);
+        if (read <= 0) {
+            return false;
+        }
+        end += read;
+        return true;
+    }
+
+    /**
+     * Move the unread bytes to the start of the buffer. It is only called
+     * before reading a new request, when the previous one is not used anymore
+     */
+    private void compact() {
+        if (start == 0) {
+            return;
+        }
+        System.arraycopy(buf, start, buf, 0, end - start);
+        end -= start;
+        start = 0;
+        bodyStart = 0;
+    }
+}
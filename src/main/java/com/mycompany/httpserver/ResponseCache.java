@@ -0,0 +1,159 @@
+package com.mycompany.httpserver;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory cache of the responses of the GET services registered with a
+ * time to live. Each entry holds the response already encoded, so a hit is
+ * written to the connection without running the service or building its
+ * headers again.
+ *
+ * The key is the path of the request and its query parameters sorted by name,
+ * so "?a=1&amp;b=2" and "?b=2&amp;a=1" share the same entry. The cache has an
+ * entry limit and a byte budget and evicts the least recently used responses
+ * when one of them is exceeded.
+ *
+ * @author sebastian.cardona-p
+ */
+public class ResponseCache {
+
+    /**
+     * A response ready to be sent until it expires
+     */
+    static final class Entry {
+
+        final byte[] headerKeepAlive;
+        final byte[] headerClose;
+        final byte[] body;
+        // System.nanoTime() after which the entry is not used
+        final long expiresAt;
+
+        Entry(byte[] headerKeepAlive, byte[] headerClose, byte[] body, long expiresAt) {
+            this.headerKeepAlive = headerKeepAlive;
+            this.headerClose = headerClose;
+            this.body = body;
+            this.expiresAt = expiresAt;
+        }
+
+        byte[] header(boolean keepAlive) {
+            return keepAlive ? headerKeepAlive : headerClose;
+        }
+
+        long size() {
+            return headerKeepAlive.length + headerClose.length + body.length;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final int maxEntries;
+    private final long maxBytes;
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries max number of responses
+     * @param maxBytes byte budget of all the responses
+     */
+    public ResponseCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Build the key of a request, its path and its sorted query parameters
+     *
+     * @param request
+     * @return the key
+     */
+    static String key(HttpRequest request) {
+        String query = request.normalizedQuery();
+        return query.isEmpty() ? request.getPath() : request.getPath() + "?" + query;
+    }
+
+    /**
+     * @param key
+     * @param now System.nanoTime()
+     * @return the response or null if it is not cached or it expired
+     */
+    synchronized Entry get(String key, long now) {
+        Entry entry = entries.get(key);
+        if (entry != null && now - entry.expiresAt >= 0) {
+            entries.remove(key);
+            currentBytes -= entry.size();
+            entry = null;
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry;
+    }
+
+    /**
+     * Save a response, a response larger than the whole budget is not saved
+     *
+     * @param key
+     * @param entry
+     */
+    synchronized void put(String key, Entry entry) {
+        if (entry.size() > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            currentBytes -= previous.size();
+        }
+        currentBytes += entry.size();
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((currentBytes > maxBytes || entries.size() > maxEntries) && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            currentBytes -= evicted.size();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Remove every response, used when the services change
+     */
+    synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return currentBytes;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
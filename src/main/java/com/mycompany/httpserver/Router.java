@@ -0,0 +1,325 @@
+package com.mycompany.httpserver;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Radix tree with the routes of the REST services. The static parts of the
+ * routes share their common prefixes, so a path is matched walking its
+ * characters once. A route can have named parameters like "/users/{id}",
+ * that capture one segment, and end with a wildcard like "/files/*" or
+ * "/files/{path*}", that captures the rest of the path.
+ *
+ * When more than one route matches a path, static parts win over parameters
+ * and parameters win over wildcards.
+ *
+ * Routes can be added while the server is running. Adding a route copies the
+ * tree, changes the copy and publishes it through a volatile field, so the
+ * request threads match without locks and always see a complete tree.
+ *
+ * @author sebastian.cardona-p
+ */
+final class Router {
+
+    /**
+     * A registered route, with the names of its parameters in the order they
+     * appear in the pattern
+     */
+    static final class Route {
+
+        final String pattern;
+        final String[] paramNames;
+        final Service service;
+        // null for the synchronous services
+        final AsyncService asyncService;
+        final long timeoutMillis;
+        // 0 when the responses are not cached
+        final long cacheTtlMillis;
+        // null when the route has no rate limit
+        volatile RateLimiter rateLimiter;
+        // Se asigna al registrar la ruta en HttpServer
+        volatile RequestMetrics metrics;
+
+        Route(String pattern, String[] paramNames, Service service, AsyncService asyncService, long timeoutMillis, long cacheTtlMillis) {
+            this.pattern = pattern;
+            this.paramNames = paramNames;
+            this.service = service;
+            this.asyncService = asyncService;
+            this.timeoutMillis = timeoutMillis;
+            this.cacheTtlMillis = cacheTtlMillis;
+        }
+    }
+
+    private static final class Node {
+
+        // Static characters of the edge that leads to this node
+        String prefix;
+        char[] indices = new char[0];
+        Node[] children = new Node[0];
+        // Child that captures one segment
+        Node param;
+        // Child that captures the rest of the path
+        Node wildcard;
+        Route route;
+
+        Node(String prefix) {
+            this.prefix = prefix;
+        }
+
+        /**
+         * @return a copy of this node and its children, the routes are shared
+         */
+        Node copy() {
+            Node copy = new Node(prefix);
+            copy.indices = indices.clone();
+            copy.children = new Node[children.length];
+            for (int i = 0; i < children.length; i++) {
+                copy.children[i] = children[i].copy();
+            }
+            copy.param = param == null ? null : param.copy();
+            copy.wildcard = wildcard == null ? null : wildcard.copy();
+            copy.route = route;
+            return copy;
+        }
+
+        Node child(char first) {
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] == first) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node child) {
+            int size = indices.length;
+            char[] grownIndices = new char[size + 1];
+            Node[] grownChildren = new Node[size + 1];
+            System.arraycopy(indices, 0, grownIndices, 0, size);
+            System.arraycopy(children, 0, grownChildren, 0, size);
+            grownIndices[size] = child.prefix.charAt(0);
+            grownChildren[size] = child;
+            indices = grownIndices;
+            children = grownChildren;
+        }
+
+        void replaceChild(Node child) {
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] == child.prefix.charAt(0)) {
+                    children[i] = child;
+                }
+            }
+        }
+    }
+
+    /**
+     * A tree that is not changed after it is published
+     */
+    private static final class Tree {
+
+        final Node root;
+        final int maxParams;
+
+        Tree(Node root, int maxParams) {
+            this.root = root;
+            this.maxParams = maxParams;
+        }
+    }
+
+    private volatile Tree tree = new Tree(new Node(""), 0);
+    private final Map<String, Route> routes = new HashMap<>();
+
+    /**
+     * Add a route or replace the route with the same pattern
+     *
+     * @param pattern like "/users/{id}" or "/files/*"
+     * @param service
+     * @return the route
+     * @throws IllegalArgumentException if the pattern is not valid
+     */
+    Route add(String pattern, Service service) {
+        return add(pattern, service, null, 0, 0);
+    }
+
+    /**
+     * Add a route whose responses are cached or replace the route with the
+     * same pattern
+     *
+     * @param pattern like "/users/{id}" or "/files/*"
+     * @param service
+     * @param cacheTtlMillis time a response is reused, 0 to not cache them
+     * @return the route
+     * @throws IllegalArgumentException if the pattern is not valid
+     */
+    Route add(String pattern, Service service, long cacheTtlMillis) {
+        return add(pattern, service, null, 0, cacheTtlMillis);
+    }
+
+    /**
+     * Add a route of an asynchronous service or replace the route with the
+     * same pattern
+     *
+     * @param pattern like "/users/{id}" or "/files/*"
+     * @param service blocking version of the service
+     * @param asyncService the service, null for a synchronous route
+     * @param timeoutMillis time the response of asyncService is waited for
+     * @return the route
+     * @throws IllegalArgumentException if the pattern is not valid
+     */
+    Route add(String pattern, Service service, AsyncService asyncService, long timeoutMillis) {
+        return add(pattern, service, asyncService, timeoutMillis, 0);
+    }
+
+    private synchronized Route add(String pattern, Service service, AsyncService asyncService, long timeoutMillis, long cacheTtlMillis) {
+        List<String> names = new ArrayList<>();
+        // Los hilos de las solicitudes siguen usando el arbol anterior hasta que se publica la copia
+        Node root = tree.root.copy();
+        Node node = root;
+        int pos = 0;
+        while (pos < pattern.length()) {
+            char c = pattern.charAt(pos);
+            if (c == '*' && pos == pattern.length() - 1) {
+                names.add("*");
+                node = wildcardChild(node);
+                pos++;
+            } else if (c == '{') {
+                int close = pattern.indexOf('}', pos);
+                if (close < 0 || close == pos + 1) {
+                    throw new IllegalArgumentException("Invalid parameter in route " + pattern);
+                }
+                String name = pattern.substring(pos + 1, close);
+                pos = close + 1;
+                if (name.endsWith("*")) {
+                    if (pos != pattern.length()) {
+                        throw new IllegalArgumentException("The wildcard must be at the end of the route " + pattern);
+                    }
+                    names.add(name.substring(0, name.length() - 1));
+                    node = wildcardChild(node);
+                } else {
+                    if (pos < pattern.length() && pattern.charAt(pos) != '/') {
+                        throw new IllegalArgumentException("A parameter must be a whole segment in route " + pattern);
+                    }
+                    names.add(name);
+                    if (node.param == null) {
+                        node.param = new Node("");
+                    }
+                    node = node.param;
+                }
+            } else {
+                int end = pos;
+                while (end < pattern.length() && pattern.charAt(end) != '{'
+                        && !(pattern.charAt(end) == '*' && end == pattern.length() - 1)) {
+                    end++;
+                }
+                node = staticChild(node, pattern.substring(pos, end));
+                pos = end;
+            }
+        }
+
+        // Una ruta repetida reemplaza a la anterior
+        node.route = new Route(pattern, names.toArray(new String[0]), service, asyncService, timeoutMillis, cacheTtlMillis);
+        Route route = node.route;
+        routes.put(pattern, route);
+        tree = new Tree(root, Math.max(tree.maxParams, names.size()));
+        return route;
+    }
+
+    /**
+     * @param pattern the pattern used to add the route
+     * @return the route or null if no route has that pattern
+     */
+    synchronized Route get(String pattern) {
+        return routes.get(pattern);
+    }
+
+    private static Node wildcardChild(Node node) {
+        if (node.wildcard == null) {
+            node.wildcard = new Node("");
+        }
+        return node.wildcard;
+    }
+
+    /**
+     * Walk or create the static nodes of a text, splitting an edge when the
+     * text only shares part of it
+     */
+    private static Node staticChild(Node node, String text) {
+        while (!text.isEmpty()) {
+            Node child = node.child(text.charAt(0));
+            if (child == null) {
+                child = new Node(text);
+                node.addChild(child);
+                return child;
+            }
+            int common = 0;
+            int max = Math.min(child.prefix.length(), text.length());
+            while (common < max && child.prefix.charAt(common) == text.charAt(common)) {
+                common++;
+            }
+            if (common < child.prefix.length()) {
+                Node split = new Node(child.prefix.substring(0, common));
+                child.prefix = child.prefix.substring(common);
+                split.addChild(child);
+                node.replaceChild(split);
+                child = split;
+            }
+            text = text.substring(common);
+            node = child;
+        }
+        return node;
+    }
+
+    /**
+     * Find the route of a path. The parameters are saved in the request as
+     * offsets inside the path, they are only turned into strings when the
+     * service asks for them
+     *
+     * @param path
+     * @param start index where the route starts inside the path
+     * @param request receives the parameters, may be null
+     * @return the route or null if none matches
+     */
+    Route match(String path, int start, HttpRequest request) {
+        Tree current = tree;
+        int[] params = request != null ? request.pathParamOffsets(current.maxParams) : new int[current.maxParams * 2];
+        Route route = match(current.root, path, start, params, 0);
+        if (route != null && request != null) {
+            request.setPathParams(path, route.paramNames);
+        }
+        return route;
+    }
+
+    private static Route match(Node node, String path, int pos, int[] params, int depth) {
+        if (pos < path.length()) {
+            Node child = node.child(path.charAt(pos));
+            if (child != null && path.startsWith(child.prefix, pos)) {
+                Route route = match(child, path, pos + child.prefix.length(), params, depth);
+                if (route != null) {
+                    return route;
+                }
+            }
+            if (node.param != null) {
+                int end = path.indexOf('/', pos);
+                end = end < 0 ? path.length() : end;
+                if (end > pos) {
+                    params[depth * 2] = pos;
+                    params[depth * 2 + 1] = end;
+                    Route route = match(node.param, path, end, params, depth + 1);
+                    if (route != null) {
+                        return route;
+                    }
+                }
+            }
+        } else if (node.route != null) {
+            return node.route;
+        }
+        if (node.wildcard != null && node.wildcard.route != null) {
+            params[depth * 2] = pos;
+            params[depth * 2 + 1] = path.length();
+            return node.wildcard.route;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,340 @@
+package com.mycompany.httpserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In memory cache of the static files. Each entry holds the bytes of the file
+ * and its response headers already encoded, so a hit is answered without
+ * touching the disk.
+ *
+ * The cache has a byte budget and evicts the least recently used files when it
+ * is exceeded. An entry is revalidated against the modification time and size
+ * of its file at most once per revalidation interval, so a changed file is
+ * served again from disk without asking the file system on every hit.
+ *
+ * Text files get their gzip and deflate versions when they are loaded, so
+ * each version of a file is compressed only once. The ETag of every version
+ * is also computed once, when the file is loaded.
+ *
+ * @author sebastian.cardona-p
+ */
+public class StaticFileCache {
+
+    /**
+     * One representation of a file, as it is or compressed, with its ETag
+     * and its headers
+     */
+    static final class Variant {
+
+        // null when the file is read from disk
+        final byte[] body;
+        final String etag;
+        // Headers that also go in the partial responses
+        final String extraHeaders;
+        final byte[] headerKeepAlive;
+        final byte[] headerClose;
+        final byte[] notModifiedKeepAlive;
+        final byte[] notModifiedClose;
+
+        Variant(String contentType, String encoding, String commonHeaders, byte[] body, long length, String etag) {
+            this.body = body;
+            this.etag = etag;
+            this.extraHeaders = commonHeaders + "ETag: " + etag + "\r\n"
+                    + (encoding == null ? "" : "Content-Encoding: " + encoding + "\r\n");
+            this.headerKeepAlive = bytes(HttpServer.headers("200 OK", contentType, length, true, extraHeaders));
+            this.headerClose = bytes(HttpServer.headers("200 OK", contentType, length, false, extraHeaders));
+            String validators = commonHeaders + "ETag: " + etag + "\r\n";
+            this.notModifiedKeepAlive = bytes(HttpServer.headers("304 Not Modified", null, -1, true, validators));
+            this.notModifiedClose = bytes(HttpServer.headers("304 Not Modified", null, -1, false, validators));
+        }
+
+        byte[] header(boolean keepAlive) {
+            return keepAlive ? headerKeepAlive : headerClose;
+        }
+
+        byte[] notModified(boolean keepAlive) {
+            return keepAlive ? notModifiedKeepAlive : notModifiedClose;
+        }
+
+        long size() {
+            return (body == null ? 0 : body.length) + headerKeepAlive.length + headerClose.length
+                    + notModifiedKeepAlive.length + notModifiedClose.length;
+        }
+
+        private static byte[] bytes(String headers) {
+            return headers.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * A static file ready to be sent. When the file is larger than the max
+     * entry size the body is null and the file must be read from disk
+     */
+    static final class Entry {
+
+        final Path file;
+        final String contentType;
+        final String cacheControl;
+        final long lastModified;
+        final long length;
+        final byte[] body;
+        final String lastModifiedDate;
+        final Variant identity;
+        final Variant gzip;
+        final Variant deflate;
+        volatile long validatedAt;
+
+        Entry(Path file, String contentType, String cacheControl, long lastModified, long length, byte[] body, byte[] gzipBody, byte[] deflateBody, long now) {
+            this.file = file;
+            this.contentType = contentType;
+            this.cacheControl = cacheControl;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.body = body;
+            this.lastModifiedDate = HttpServer.httpDate(lastModified);
+            String commonHeaders = "Accept-Ranges: bytes\r\n"
+                    + "Last-Modified: " + lastModifiedDate + "\r\n"
+                    + (cacheControl == null ? "" : "Cache-Control: " + cacheControl + "\r\n")
+                    + (gzipBody != null || deflateBody != null ? "Vary: Accept-Encoding\r\n" : "");
+            // Los archivos en memoria usan un hash del contenido, los grandes
+            // la fecha y el tamaño para no leerlos completos
+            String tag = body != null ? hash(body) : Long.toHexString(lastModified) + "-" + Long.toHexString(length);
+            this.identity = new Variant(contentType, null, commonHeaders, body, length, "\"" + tag + "\"");
+            this.gzip = gzipBody == null ? null
+                    : new Variant(contentType, ContentEncoding.GZIP, commonHeaders, gzipBody, gzipBody.length, "\"" + tag + "-gzip\"");
+            this.deflate = deflateBody == null ? null
+                    : new Variant(contentType, ContentEncoding.DEFLATE, commonHeaders, deflateBody, deflateBody.length, "\"" + tag + "-deflate\"");
+            this.validatedAt = now;
+        }
+
+        /**
+         * @param encoding chosen from the Accept-Encoding of the request
+         * @return the compressed version or null to send the file as it is
+         */
+        Variant encoded(String encoding) {
+            if (ContentEncoding.GZIP.equals(encoding)) {
+                return gzip;
+            }
+            return ContentEncoding.DEFLATE.equals(encoding) ? deflate : null;
+        }
+
+        byte[] header(boolean keepAlive) {
+            return identity.header(keepAlive);
+        }
+
+        long size() {
+            return identity.size() + (gzip == null ? 0 : gzip.size()) + (deflate == null ? 0 : deflate.size());
+        }
+    }
+
+    static final int DEFAULT_COMPRESS_MIN_SIZE = 256;
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final long revalidateMillis;
+    private final int compressMinSize;
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes byte budget of all the entries
+     * @param revalidateMillis time an entry is served without checking its
+     * file again
+     */
+    public StaticFileCache(long maxBytes, long revalidateMillis) {
+        this(maxBytes, revalidateMillis, DEFAULT_COMPRESS_MIN_SIZE);
+    }
+
+    /**
+     * @param maxBytes byte budget of all the entries
+     * @param revalidateMillis time an entry is served without checking its
+     * file again
+     * @param compressMinSize text files smaller than this are not compressed,
+     * a negative value disables the compression
+     */
+    public StaticFileCache(long maxBytes, long revalidateMillis, int compressMinSize) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxBytes / 4;
+        this.revalidateMillis = revalidateMillis;
+        this.compressMinSize = compressMinSize;
+    }
+
+    /**
+     * Get a file from the cache, loading it if it is not there or if it
+     * changed on disk
+     *
+     * @param file
+     * @param contentType
+     * @return the entry or null if the file does not exist
+     * @throws IOException
+     */
+    Entry get(Path file, String contentType) throws IOException {
+        return get(file, contentType, null);
+    }
+
+    /**
+     * Get a file from the cache, loading it if it is not there or if it
+     * changed on disk
+     *
+     * @param file
+     * @param contentType
+     * @param cacheControl value of the Cache-Control header of the file, may
+     * be null
+     * @return the entry or null if the file does not exist
+     * @throws IOException
+     */
+    Entry get(Path file, String contentType, String cacheControl) throws IOException {
+        String key = file.toString();
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && !Objects.equals(entry.cacheControl, cacheControl)) {
+            remove(key, entry);
+            entry = null;
+        }
+        if (entry != null) {
+            if (now - entry.validatedAt < revalidateMillis) {
+                hits.increment();
+                return entry;
+            }
+            File realFile = file.toFile();
+            if (realFile.lastModified() == entry.lastModified && realFile.length() == entry.length) {
+                entry.validatedAt = now;
+                hits.increment();
+                return entry;
+            }
+            remove(key, entry);
+        }
+
+        misses.increment();
+        File realFile = file.toFile();
+        long lastModified = realFile.lastModified();
+        long length = realFile.length();
+        if (!realFile.isFile()) {
+            return null;
+        }
+        if (length > maxEntryBytes) {
+            // Demasiado grande para la memoria, solo se guardan sus headers y
+            // el cuerpo se lee del disco en cada solicitud
+            entry = new Entry(file, contentType, cacheControl, lastModified, length, null, null, null, now);
+            put(key, entry);
+            return entry;
+        }
+
+        byte[] body = Files.readAllBytes(file);
+        byte[] gzipBody = null;
+        byte[] deflateBody = null;
+        if (compressMinSize >= 0 && body.length >= compressMinSize && ContentEncoding.isCompressible(contentType)) {
+            gzipBody = smaller(ContentEncoding.gzip(body), body);
+            deflateBody = smaller(ContentEncoding.deflate(body), body);
+        }
+        entry = new Entry(file, contentType, cacheControl, lastModified, body.length, body, gzipBody, deflateBody, now);
+        put(key, entry);
+        return entry;
+    }
+
+    /**
+     * Check if a file can be sent from the cache without reading the disk:
+     * its entry is there and it does not need to be revalidated yet
+     *
+     * @param file
+     * @param cacheControl value of the Cache-Control header of the file, may
+     * be null
+     * @return false if get would read the file or check it on disk
+     */
+    boolean isFresh(Path file, String cacheControl) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(file.toString());
+        }
+        return entry != null && Objects.equals(entry.cacheControl, cacheControl)
+                && System.currentTimeMillis() - entry.validatedAt < revalidateMillis;
+    }
+
+    private static String hash(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return HexFormat.of().formatHex(digest, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] smaller(byte[] compressed, byte[] original) {
+        return compressed.length < original.length ? compressed : null;
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            currentBytes -= previous.size();
+        }
+        currentBytes += entry.size();
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (currentBytes > maxBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            currentBytes -= evicted.size();
+            evictions.increment();
+        }
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+            currentBytes -= entry.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getRevalidateMillis() {
+        return revalidateMillis;
+    }
+
+    public int getCompressMinSize() {
+        return compressMinSize;
+    }
+}
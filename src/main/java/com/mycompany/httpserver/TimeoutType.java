@@ -0,0 +1,26 @@
+package com.mycompany.httpserver;
+
+/**
+ * The timeouts that close a connection
+ *
+ * @author sebastian.cardona-p
+ */
+public enum TimeoutType {
+    /**
+     * The request line and headers did not arrive in time after their first
+     * byte
+     */
+    HEADER_READ,
+    /**
+     * The body did not arrive in time after the headers
+     */
+    BODY_READ,
+    /**
+     * A keep-alive connection waited too long for its next request
+     */
+    IDLE,
+    /**
+     * The client did not read the response in time
+     */
+    WRITE
+}
@@ -0,0 +1,171 @@
+package com.mycompany.httpserver;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel. The time is divided in ticks and each timeout goes to
+ * the slot of the tick where it expires, so scheduling one is adding it to a
+ * queue and advancing the wheel only visits the slot of the current tick,
+ * whatever the number of timeouts. A timeout more than one turn away waits
+ * in its slot for the turns that are left.
+ *
+ * Timeouts can be scheduled and cancelled from any thread. The wheel is
+ * advanced by a single thread: its own thread started with start, or the
+ * owner calling advance, like a reactor in its selector loop.
+ *
+ * @author sebastian.cardona-p
+ */
+final class TimingWheel {
+
+    /**
+     * A scheduled task
+     */
+    static final class Timeout {
+
+        private final Runnable task;
+        // Tick en el que vence, relativo al inicio de la rueda
+        private long tick;
+        private long rounds;
+        private Timeout next;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * The task will not run, it is removed when the wheel reaches its slot
+         */
+        void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timeout[] slots;
+    private final int mask;
+    private final long startMillis;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    // Siguiente tick que se procesa
+    private long tick;
+
+    /**
+     * @param tickMillis precision of the timeouts
+     * @param slotCount slots of the wheel, rounded up to a power of two
+     */
+    TimingWheel(long tickMillis, int slotCount) {
+        if (tickMillis <= 0 || slotCount <= 0) {
+            throw new IllegalArgumentException("tick and slots must be positive");
+        }
+        int size = 1;
+        while (size < slotCount) {
+            size <<= 1;
+        }
+        this.tickMillis = tickMillis;
+        this.slots = new Timeout[size];
+        this.mask = size - 1;
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    /**
+     * Run a task after a delay, it never runs before the delay and at most
+     * one tick after it
+     *
+     * @param task
+     * @param delayMillis
+     * @return the timeout, to cancel it
+     */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout timeout = new Timeout(task);
+        long deadline = System.currentTimeMillis() + Math.max(delayMillis, 0) - startMillis;
+        timeout.tick = (deadline + tickMillis - 1) / tickMillis;
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Run the timeouts that expired until now, it must always be called from
+     * the same thread
+     *
+     * @param nowMillis System.currentTimeMillis()
+     */
+    void advance(long nowMillis) {
+        long target = (nowMillis - startMillis) / tickMillis;
+        while (tick <= target) {
+            transferAdded();
+            expire((int) (tick & mask));
+            tick++;
+        }
+    }
+
+    /**
+     * Advance the wheel in its own daemon thread
+     *
+     * @param name name of the thread
+     */
+    void start(String name) {
+        Thread thread = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                advance(System.currentTimeMillis());
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    long getTickMillis() {
+        return tickMillis;
+    }
+
+    private void transferAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            // Un timeout que ya vencio va al tick actual
+            long expiresAt = Math.max(timeout.tick, tick);
+            timeout.rounds = (expiresAt - tick) / slots.length;
+            int slot = (int) (expiresAt & mask);
+            timeout.next = slots[slot];
+            slots[slot] = timeout;
+        }
+    }
+
+    private void expire(int slot) {
+        Timeout previous = null;
+        Timeout timeout = slots[slot];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.cancelled || timeout.rounds <= 0) {
+                if (previous == null) {
+                    slots[slot] = next;
+                } else {
+                    previous.next = next;
+                }
+                timeout.next = null;
+                if (!timeout.cancelled) {
+                    run(timeout);
+                }
+            } else {
+                timeout.rounds--;
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    private static void run(Timeout timeout) {
+        try {
+            timeout.task.run();
+        } catch (RuntimeException ex) {
+            System.getLogger(HttpServer.class.getName()).log(System.Logger.Level.ERROR, (String) null, ex);
+        }
+    }
+}
@@ -5,23 +5,70 @@ package com.mycompany.httpserver.WebApplication;
  * @author sebastian.cardona-p
  */
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import static com.mycompany.httpserver.HttpServer.cacheControl;
 import static com.mycompany.httpserver.HttpServer.get;
+import static com.mycompany.httpserver.HttpServer.getAsync;
 import static com.mycompany.httpserver.HttpServer.post;
 import static com.mycompany.httpserver.HttpServer.startServer;
 import static com.mycompany.httpserver.HttpServer.staticfiles;
+import static com.mycompany.httpserver.HttpServer.virtualThreads;
 
 public class WebApplication {
 
     public static void main(String[] args) throws IOException, URISyntaxException {
         staticfiles("/webroot");
-        get("/world", (req, res) -> "hello world!");
-        get("/hello", (req, resp) -> "hello " + req.getValue("name") +" you are " + req.getValue("age") + " years old");
+        virtualThreads(1000);
+        cacheControl("/images/", "public, max-age=86400");
+        cacheControl("/", "no-cache");
+        // Las respuestas que no cambian se guardan en la cache por un tiempo
+        get("/world", (req, res) -> "hello world!", 60_000);
+        get("/hello", (req, resp) -> "hello " + req.getValue("name") +" you are " + req.getValue("age") + " years old", 10_000);
         get("/pi", (req, resp) -> {
             return String.valueOf(Math.PI);
+        }, 60_000);
+        get("/users/{id}", (req, resp) -> "user " + req.getPathParam("id"));
+        get("/numbers", (req, resp) -> {
+            // El cuerpo se escribe por partes, sin construir un String con todo
+            resp.contentType("text/plain");
+            int count = Math.min(req.getInt("count", 10), 1_000_000);
+            try (OutputStream body = resp.getOutputStream()) {
+                for (int i = 1; i <= count; i++) {
+                    body.write((i + "\n").getBytes(StandardCharsets.US_ASCII));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
         });
+        // Simula un servicio que espera una respuesta externa sin ocupar el hilo de la conexion
+        getAsync("/delayed", (req, resp) -> {
+            long millis = Math.min(Math.max(req.getLong("ms", 100), 0), 10_000);
+            return CompletableFuture.supplyAsync(() -> "waited " + millis + " ms",
+                    CompletableFuture.delayedExecutor(millis, TimeUnit.MILLISECONDS));
+        }, 1000);
         post("/hellopost", (req, resp) -> "hello " + req.getValue("name") + " this is a simple post method example");
+        post("/upload", (req, resp) -> {
+            // El cuerpo se lee por partes, sin cargarlo completo en memoria
+            long total = 0;
+            byte[] buffer = new byte[8192];
+            try (InputStream body = req.getBody()) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    total += read;
+                }
+            } catch (IOException e) {
+                return "upload failed: " + e.getMessage();
+            }
+            return "received " + total + " bytes";
+        });
 
 
         startServer(args);
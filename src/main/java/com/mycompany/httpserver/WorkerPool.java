@@ -0,0 +1,132 @@
+package com.mycompany.httpserver;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed number of threads that handle the requests, with a bounded queue in
+ * front of them. A request that finds the queue full is shed: it is answered
+ * right away with an overload response instead of being handled. A request
+ * that waited in the queue longer than the queue wait timeout is shed by the
+ * worker that takes it, which only sends the overload response, so the
+ * queue drains fast and the requests that are accepted keep a bounded
+ * latency. No timer is kept for each request, a finished request leaves
+ * nothing behind.
+ *
+ * @author sebastian.cardona-p
+ */
+final class WorkerPool {
+
+    /**
+     * Work of one request
+     */
+    interface Task {
+
+        /**
+         * @return false if the connection must be closed after the response
+         * @throws IOException
+         */
+        boolean run() throws IOException;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long queueWaitNanos;
+    private final int queueDepth;
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * @param threads number of worker threads
+     * @param queueDepth requests that can wait for a worker, 0 to only accept
+     * a request when a worker is free
+     * @param queueWaitMillis time a request can wait in the queue, more than
+     * 0
+     */
+    WorkerPool(int threads, int queueDepth, long queueWaitMillis) {
+        if (threads <= 0 || queueDepth < 0 || queueWaitMillis <= 0) {
+            throw new IllegalArgumentException("invalid worker pool limits");
+        }
+        BlockingQueue<Runnable> queue = queueDepth == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueDepth);
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, task -> {
+            Thread worker = new Thread(task, "http-worker-" + count.getAndIncrement());
+            worker.setDaemon(true);
+            return worker;
+        });
+        this.queueWaitNanos = TimeUnit.MILLISECONDS.toNanos(queueWaitMillis);
+        this.queueDepth = queueDepth;
+    }
+
+    /**
+     * Queue a request
+     *
+     * @param task handles the request
+     * @param overloaded answers the request when it waited too long
+     * @return the result of the task or of overloaded, or null if the queue
+     * is full and the request must be answered by the caller
+     */
+    CompletableFuture<Boolean> submit(Task task, Task overloaded) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        long queued = System.nanoTime();
+        Runnable work = () -> {
+            if (System.nanoTime() - queued > queueWaitNanos) {
+                // Ya espero demasiado, el cliente recibe la respuesta sin ejecutar el servicio
+                shed.increment();
+                run(overloaded, result);
+            } else {
+                run(task, result);
+            }
+        };
+        try {
+            executor.execute(work);
+        } catch (RejectedExecutionException e) {
+            shed.increment();
+            return null;
+        }
+        return result;
+    }
+
+    private static void run(Task task, CompletableFuture<Boolean> result) {
+        try {
+            result.complete(task.run());
+        } catch (IOException | RuntimeException | Error e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return requests answered with an overload response
+     */
+    long getShed() {
+        return shed.sum();
+    }
+
+    /**
+     * @return requests waiting for a worker
+     */
+    int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    int getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * Stop the workers after the queued requests
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+}
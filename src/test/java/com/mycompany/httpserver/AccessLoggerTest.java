@@ -0,0 +1,86 @@
+package com.mycompany.httpserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas unitarias para el registro de accesos
+ * Verifica el formato, la rotacion de archivos y el descarte de registros
+ */
+public class AccessLoggerTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("El registro debe escribir una linea por respuesta y los mensajes de depuracion solo en DEBUG")
+    void testFormatAndLevels() throws IOException {
+        Path file = directory.resolve("access.log");
+        AccessLogger logger = new AccessLogger(file, 1024 * 1024, 2, 64);
+        HttpRequest request = new HttpRequest(URI.create("/app/hello?name=x"));
+
+        logger.access(request, 200, 1_500_000);
+        logger.debug("oculto");
+        logger.level(AccessLogLevel.DEBUG);
+        logger.debug("visible");
+        logger.level(AccessLogLevel.OFF);
+        logger.access(request, 404, 1000);
+        logger.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).matches("- - - \\[.+ \\+0000\\] \"GET /app/hello HTTP/1.1\" 200 - 1500"), lines.get(0));
+        assertTrue(lines.get(1).endsWith("] DEBUG visible"));
+    }
+
+    @Test
+    @DisplayName("El registro debe rotar el archivo por tamaño sin perder lineas")
+    void testRotation() throws IOException {
+        Path file = directory.resolve("access.log");
+        AccessLogger logger = new AccessLogger(file, 4 * 1024, 1000, 4096);
+        log(logger, 2000);
+
+        assertEquals(0, logger.getDropped());
+        assertEquals(2000, writtenLines(4 * 1024));
+        assertTrue(Files.exists(directory.resolve("access.log.1")), "El archivo debe rotar");
+    }
+
+    @Test
+    @DisplayName("El registro debe contar los registros descartados cuando el anillo esta lleno")
+    void testDrops() throws IOException {
+        // Un anillo de dos casillas se llena antes de que el escritor lo vacie
+        AccessLogger logger = new AccessLogger(directory.resolve("access.log"), 1024 * 1024, 2, 2);
+        log(logger, 100_000);
+
+        assertTrue(logger.getDropped() > 0, "Con el anillo lleno los registros se descartan");
+        assertEquals(100_000, writtenLines(1024 * 1024) + logger.getDropped(), "Cada registro se escribe o se cuenta como descartado");
+    }
+
+    private static void log(AccessLogger logger, int count) {
+        HttpRequest request = new HttpRequest(URI.create("/index.html"));
+        for (int i = 0; i < count; i++) {
+            logger.access(request, 200, 1000);
+        }
+        logger.close();
+    }
+
+    private long writtenLines(long maxFileBytes) throws IOException {
+        long lines = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                assertTrue(Files.size(file) <= maxFileBytes, "Ningun archivo debe pasar del limite");
+                lines += Files.readAllLines(file).size();
+            }
+        }
+        return lines;
+    }
+}
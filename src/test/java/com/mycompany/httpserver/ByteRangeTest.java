@@ -0,0 +1,51 @@
+package com.mycompany.httpserver;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para el header Range
+ * Verifica los rangos simples, los sufijos y los rangos que no se pueden satisfacer
+ */
+public class ByteRangeTest {
+
+    @Test
+    @DisplayName("Range debe interpretar rangos cerrados, abiertos y sufijos")
+    void testParseRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99, 200-, -50", 1000);
+
+        assertEquals(3, ranges.size());
+        assertEquals(0, ranges.get(0).first);
+        assertEquals(99, ranges.get(0).last);
+        assertEquals(200, ranges.get(1).first);
+        assertEquals(999, ranges.get(1).last);
+        assertEquals(950, ranges.get(2).first);
+        assertEquals(50, ranges.get(2).length());
+    }
+
+    @Test
+    @DisplayName("Range debe recortar los rangos al tamaño del archivo y descartar los que están fuera")
+    void testUnsatisfiableRanges() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=500-2000,5000-6000", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals(999, ranges.get(0).last);
+
+        assertTrue(ByteRange.parse("bytes=1000-", 1000).isEmpty(), "Ningún rango dentro del archivo");
+        assertEquals(1000, ByteRange.parse("bytes=-5000", 1000).get(0).length(), "Un sufijo mayor es el archivo completo");
+    }
+
+    @Test
+    @DisplayName("Range mal formado debe ignorarse")
+    void testInvalidRanges() {
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=10-5", 1000));
+        assertNull(ByteRange.parse("bytes=a-5", 1000));
+        assertNull(ByteRange.parse("bytes=5", 1000));
+        assertNull(ByteRange.parse("bytes=" + "0-1,".repeat(ByteRange.MAX_RANGES + 1), 1000), "Demasiados rangos");
+    }
+}
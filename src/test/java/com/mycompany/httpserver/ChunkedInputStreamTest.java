@@ -0,0 +1,94 @@
+package com.mycompany.httpserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para los cuerpos de las solicitudes
+ * Verifica la decodificación chunked y el límite de Content-Length
+ */
+public class ChunkedInputStreamTest {
+
+    private static final String CHUNKED = "5\r\nhello\r\n7;ext=1\r\n, world\r\n0\r\nTrailer: x\r\n\r\n";
+
+    @Test
+    @DisplayName("Chunked debe decodificar los bloques y detenerse al final del cuerpo")
+    void testDecodeChunkedBody() throws IOException {
+        InputStream raw = stream(CHUNKED + "GET / HTTP/1.1\r\n\r\n");
+        ChunkedInputStream body = new ChunkedInputStream(raw, 1024);
+
+        assertEquals("hello, world", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(-1, body.read(), "Debe seguir en el final del cuerpo");
+        assertEquals("GET / HTTP/1.1\r\n\r\n", new String(raw.readAllBytes(), StandardCharsets.UTF_8),
+                "No debe leer la siguiente solicitud");
+    }
+
+    @Test
+    @DisplayName("Chunked debe rechazar cuerpos mal formados o demasiado grandes")
+    void testInvalidChunkedBody() {
+        assertThrows(IOException.class, () -> new ChunkedInputStream(stream("zz\r\nhello\r\n0\r\n\r\n"), 1024).readAllBytes());
+        assertThrows(IOException.class, () -> new ChunkedInputStream(stream("5\r\nhelloXX0\r\n\r\n"), 1024).readAllBytes());
+        assertThrows(IOException.class, () -> new ChunkedInputStream(stream("5\r\nhel"), 1024).readAllBytes());
+        assertThrows(IOException.class, () -> new ChunkedInputStream(stream(CHUNKED), 8).readAllBytes());
+    }
+
+    @Test
+    @DisplayName("Chunked debe exigir CRLF y solo hexadecimal con extensiones en las dos lecturas")
+    void testStrictChunkLines() throws IOException, HttpParseException {
+        assertRejected("5\r5\r\nhello\r\n0\r\n\r\n");
+        assertRejected("5 \r\nhello\r\n0\r\n\r\n");
+        assertRejected(" 5\r\nhello\r\n0\r\n\r\n");
+        assertRejected("5 x\r\nhello\r\n0\r\n\r\n");
+        assertRejected("5\nhello\n0\n\n");
+        assertRejected("5\r\nhello\n0\r\n\r\n");
+        assertRejected("5\r\nhello\r\n0\r\nTrailer: x\n\r\n");
+
+        String valid = "5;name=\"a b\"\r\nhello\r\n0;last\r\n\r\n";
+        byte[] data = valid.getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals("hello", new String(new ChunkedInputStream(stream(valid), 1024).readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals(data.length, ChunkedInputStream.findEnd(data, 0, data.length, 1024));
+    }
+
+    @Test
+    @DisplayName("Chunked debe encontrar el final de un cuerpo que ya está en memoria")
+    void testFindEnd() throws HttpParseException {
+        byte[] data = (CHUNKED + "GET").getBytes(StandardCharsets.ISO_8859_1);
+
+        assertEquals(CHUNKED.length(), ChunkedInputStream.findEnd(data, 0, data.length, 1024));
+        assertEquals(-1, ChunkedInputStream.findEnd(data, 0, 20, 1024), "Debe esperar el resto del cuerpo");
+        HttpParseException e = assertThrows(HttpParseException.class, () -> ChunkedInputStream.findEnd(data, 0, data.length, 8));
+        assertEquals(413, e.getStatus());
+    }
+
+    @Test
+    @DisplayName("Content-Length debe leer solo los bytes del cuerpo")
+    void testContentLengthBody() throws IOException {
+        InputStream raw = stream("hello worldGET");
+        ContentLengthInputStream body = new ContentLengthInputStream(raw, 11);
+
+        assertEquals("hello world", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        assertEquals("GET", new String(raw.readAllBytes(), StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> new ContentLengthInputStream(stream("short"), 11).readAllBytes());
+    }
+
+    /**
+     * El decodificador y findEnd deben rechazar el mismo cuerpo
+     */
+    private static void assertRejected(String body) {
+        byte[] data = body.getBytes(StandardCharsets.ISO_8859_1);
+        assertThrows(IOException.class, () -> new ChunkedInputStream(stream(body), 1024).readAllBytes(), body);
+        HttpParseException e = assertThrows(HttpParseException.class, () -> ChunkedInputStream.findEnd(data, 0, data.length, 1024), body);
+        assertEquals(400, e.getStatus(), body);
+    }
+
+    private static InputStream stream(String data) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
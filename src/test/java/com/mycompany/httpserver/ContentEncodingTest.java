@@ -0,0 +1,67 @@
+package com.mycompany.httpserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas unitarias para la compresión de archivos estáticos
+ * Verifica la negociación de Accept-Encoding y las versiones comprimidas en cache
+ */
+public class ContentEncodingTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Accept-Encoding debe elegir gzip, deflate o ninguna según los pesos")
+    void testNegotiate() {
+        assertEquals("gzip", ContentEncoding.negotiate("gzip, deflate, br"));
+        assertEquals("deflate", ContentEncoding.negotiate("gzip;q=0.5, deflate"));
+        assertEquals("deflate", ContentEncoding.negotiate("deflate, gzip;q=0"));
+        assertEquals("gzip", ContentEncoding.negotiate("*"));
+        assertNull(ContentEncoding.negotiate("br"));
+        assertNull(ContentEncoding.negotiate("*;q=0, identity"));
+        assertNull(ContentEncoding.negotiate(null));
+    }
+
+    @Test
+    @DisplayName("La cache debe guardar las versiones comprimidas de los archivos de texto")
+    void testCompressedVariants() throws IOException {
+        String css = "body { margin: 0; padding: 0; }\n".repeat(40);
+        Path file = Files.writeString(dir.resolve("style.css"), css);
+        StaticFileCache cache = new StaticFileCache(1024 * 1024, 60_000, 256);
+
+        StaticFileCache.Entry entry = cache.get(file, "text/css");
+        StaticFileCache.Variant gzip = entry.encoded("gzip");
+        StaticFileCache.Variant deflate = entry.encoded("deflate");
+
+        assertNotNull(gzip);
+        assertNotNull(deflate);
+        assertTrue(gzip.body.length < css.length(), "Debe ser más pequeño que el original");
+        assertArrayEquals(css.getBytes(StandardCharsets.UTF_8), new GZIPInputStream(new ByteArrayInputStream(gzip.body)).readAllBytes());
+        assertArrayEquals(css.getBytes(StandardCharsets.UTF_8), new InflaterInputStream(new ByteArrayInputStream(deflate.body)).readAllBytes());
+        String header = new String(gzip.header(true), StandardCharsets.US_ASCII);
+        assertTrue(header.contains("Content-Encoding: gzip\r\n"));
+        assertTrue(header.contains("Content-Length: " + gzip.body.length + "\r\n"));
+        assertTrue(new String(entry.header(true), StandardCharsets.US_ASCII).contains("Vary: Accept-Encoding\r\n"));
+
+        Path small = Files.writeString(dir.resolve("small.js"), "var a = 1;");
+        Path image = Files.write(dir.resolve("image.png"), css.getBytes(StandardCharsets.UTF_8));
+        assertNull(cache.get(small, "text/javascript").encoded("gzip"), "Los archivos pequeños no se comprimen");
+        assertNull(cache.get(image, "image/png").encoded("gzip"), "Las imágenes no se comprimen");
+    }
+}
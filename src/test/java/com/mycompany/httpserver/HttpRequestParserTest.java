@@ -0,0 +1,176 @@
+package com.mycompany.httpserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para HttpRequestParser
+ * Verifica el parsing a nivel de bytes de la línea de solicitud y los headers
+ */
+public class HttpRequestParserTest {
+
+    @AfterEach
+    void restoreLimits() {
+        HttpRequestParser.limits(8192, 100);
+    }
+
+    @Test
+    @DisplayName("Parser debe extraer método, path, query y headers")
+    void testParseSimpleRequest() throws HttpParseException {
+        byte[] data = bytes("GET /app/hello?name=Pedro&age=28 HTTP/1.1\r\nHost: localhost\r\nconnection: Keep-Alive\r\n\r\n");
+        HttpRequest request = new HttpRequest();
+
+        int headerEnd = HttpRequestParser.parse(data, 0, data.length, request);
+
+        assertEquals(data.length, headerEnd, "Debe terminar después de la línea en blanco");
+        assertEquals("GET", request.getMethod());
+        assertEquals("/app/hello", request.getPath());
+        assertEquals("name=Pedro&age=28", request.getQuery());
+        assertEquals("Pedro", request.getValue("name"));
+        assertEquals("localhost", request.getHeader("HOST"), "Los headers no distinguen mayúsculas");
+        assertTrue(request.headerContains("Connection", "keep-alive"));
+        assertTrue(request.isHttp11());
+        assertNull(request.getHeader("Content-Length"));
+    }
+
+    @Test
+    @DisplayName("Parser debe pedir más bytes si los headers están incompletos")
+    void testIncompleteRequest() throws HttpParseException {
+        byte[] data = bytes("GET /index.html HTTP/1.1\r\nHost: loc");
+        HttpRequest request = new HttpRequest();
+
+        assertEquals(HttpRequestParser.NEED_MORE, HttpRequestParser.parse(data, 0, data.length, request));
+    }
+
+    @Test
+    @DisplayName("Parser debe leer solicitudes en pipeline desde el offset indicado")
+    void testPipelinedRequests() throws HttpParseException {
+        byte[] data = bytes("GET /a HTTP/1.1\r\n\r\nGET /b?x=1 HTTP/1.0\r\nContent-Length: 12\r\n\r\n");
+        HttpRequest request = new HttpRequest();
+
+        int first = HttpRequestParser.parse(data, 0, data.length, request);
+        assertEquals("/a", request.getPath());
+
+        int second = HttpRequestParser.parse(data, first, data.length, request);
+        assertEquals(data.length, second);
+        assertEquals("/b", request.getPath());
+        assertEquals("x=1", request.getQuery());
+        assertFalse(request.isHttp11());
+        assertEquals(12, request.getLongHeader("Content-Length"));
+    }
+
+    @Test
+    @DisplayName("Parser debe decodificar el path y aceptar la forma absoluta")
+    void testDecodingAndAbsoluteForm() throws HttpParseException {
+        byte[] data = bytes("GET http://localhost:35000/images/mi%20foto.png HTTP/1.1\r\n\r\n");
+        HttpRequest request = new HttpRequest();
+
+        HttpRequestParser.parse(data, 0, data.length, request);
+
+        assertEquals("/images/mi foto.png", request.getPath());
+        assertNull(request.getQuery());
+    }
+
+    @Test
+    @DisplayName("Parser debe responder 400 para solicitudes mal formadas")
+    void testMalformedRequests() {
+        assertStatus(400, "GE(T / HTTP/1.1\r\n\r\n");
+        assertStatus(400, "GET /a b HTTP/1.1\r\n\r\n");
+        assertStatus(400, "GET index.html HTTP/1.1\r\n\r\n");
+        assertStatus(400, "GET / HTP/1.1\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nHost localhost\r\n\r\n");
+        assertStatus(400, "GET / HTTP/1.1\r\nHost: a\r\n folded\r\n\r\n");
+        assertStatus(505, "GET / HTTP/2.0\r\n\r\n");
+    }
+
+    @Test
+    @DisplayName("Parser debe responder 400 si chunked no es la última codificación de Transfer-Encoding")
+    void testTransferEncodingNotChunked() throws HttpParseException {
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: gzip\r\nContent-Length: 4\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: gzip\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked, gzip\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\nTransfer-Encoding: gzip\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked, chunked\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: xchunked\r\n\r\n");
+
+        byte[] data = bytes("POST / HTTP/1.1\r\nTransfer-Encoding: gzip , CHUNKED\r\n\r\n");
+        HttpRequest request = new HttpRequest();
+        HttpRequestParser.parse(data, 0, data.length, request);
+        assertTrue(request.isChunked(), "chunked al final de la lista define el cuerpo");
+    }
+
+    @Test
+    @DisplayName("Parser debe responder 400 si Transfer-Encoding viene con Content-Length")
+    void testTransferEncodingWithContentLength() {
+        assertStatus(400, "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\nContent-Length: 4\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nContent-Length: 4\r\ntransfer-encoding: chunked\r\n\r\n");
+    }
+
+    @Test
+    @DisplayName("Parser debe responder 400 si se repite Content-Length con otro valor")
+    void testConflictingContentLength() throws HttpParseException {
+        assertStatus(400, "POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 40\r\n\r\n");
+        assertStatus(400, "POST / HTTP/1.1\r\nContent-Length: 5\r\nHost: x\r\ncontent-length: 50\r\n\r\n");
+
+        byte[] data = bytes("POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 5\r\n\r\nhello");
+        HttpRequest request = new HttpRequest();
+        HttpRequestParser.parse(data, 0, data.length, request);
+        assertEquals(5, request.getLongHeader("Content-Length"), "El mismo valor repetido es válido");
+    }
+
+    @Test
+    @DisplayName("Parser debe responder 431 y 414 cuando se superan los límites")
+    void testLimits() {
+        HttpRequestParser.limits(256, 3);
+
+        assertStatus(431, "GET / HTTP/1.1\r\nA: 1\r\nB: 2\r\nC: 3\r\nD: 4\r\n\r\n");
+        assertStatus(431, "GET / HTTP/1.1\r\nCookie: " + "x".repeat(300) + "\r\n\r\n");
+        assertStatus(414, "GET /" + "a".repeat(300) + " HTTP/1.1\r\n\r\n");
+    }
+
+    @Test
+    @DisplayName("Query debe decodificarse una vez y soportar valores repetidos y numéricos")
+    void testQueryParams() throws HttpParseException {
+        byte[] data = bytes("GET /search?tag=a&q=caf%C3%A9+bar&tag=b&page=3&size=x&empty&a%26b=1%3D2&id=9000000000 HTTP/1.1\r\n\r\n");
+        HttpRequest request = new HttpRequest();
+        HttpRequestParser.parse(data, 0, data.length, request);
+
+        assertEquals("caf\u00e9+bar", request.getValue("q"), "Debe decodificar %XX y dejar el +");
+        assertEquals("b", request.getValue("tag"), "getValue retorna el último valor");
+        assertEquals(List.of("a", "b"), request.getValues("tag"));
+        assertTrue(request.getValues("missing").isEmpty());
+        assertEquals("", request.getValue("empty"));
+        assertEquals("", request.getValue("missing"));
+        assertEquals("1=2", request.getValue("a&b"), "Nombre y valor se decodifican después de separarlos");
+        assertEquals(3, request.getInt("page", 1));
+        assertEquals(20, request.getInt("size", 20), "Un valor que no es número usa el valor por defecto");
+        assertEquals(9_000_000_000L, request.getLong("id", 0));
+        assertEquals("tag=a&q=caf%C3%A9+bar&tag=b&page=3&size=x&empty&a%26b=1%3D2&id=9000000000", request.getRawQuery());
+
+        // La siguiente solicitud de la conexión reutiliza el objeto
+        data = bytes("GET /search?page=5 HTTP/1.1\r\n\r\n");
+        HttpRequestParser.parse(data, 0, data.length, request);
+        assertEquals(5, request.getInt("page", 1));
+        assertEquals("", request.getValue("tag"), "No deben quedar parámetros de la solicitud anterior");
+    }
+
+    private static void assertStatus(int status, String raw) {
+        byte[] data = bytes(raw);
+        HttpParseException e = assertThrows(HttpParseException.class,
+                () -> HttpRequestParser.parse(data, 0, data.length, new HttpRequest()), raw);
+        assertEquals(status, e.getStatus(), raw);
+    }
+
+    private static byte[] bytes(String raw) {
+        return raw.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
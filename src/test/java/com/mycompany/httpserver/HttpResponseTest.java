@@ -0,0 +1,99 @@
+package com.mycompany.httpserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para las respuestas de los servicios
+ * Verifica el estado, los headers y los cuerpos escritos por partes
+ */
+public class HttpResponseTest {
+
+    @Test
+    @DisplayName("HttpResponse debe enviar el estado, los headers y el String del servicio")
+    void testStatusAndHeaders() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponse response = new HttpResponse(out, true, true);
+        response.status(201).header("Location", "/app/users/7").contentType("text/plain");
+        response.finish("created");
+
+        String text = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(text.startsWith("HTTP/1.1 201 Created\r\n"), "Debe enviar el estado del servicio");
+        assertTrue(text.contains("Content-Type: text/plain\r\n"));
+        assertTrue(text.contains("Location: /app/users/7\r\n"));
+        assertTrue(text.contains("Content-Length: 7\r\n"));
+        assertTrue(text.endsWith("\r\n\r\ncreated"));
+        assertTrue(response.isKeepAlive());
+        assertThrows(IllegalArgumentException.class, () -> new HttpResponse().header("X-Test", "a\r\nSet-Cookie: b"),
+                "No debe permitir inyectar headers");
+    }
+
+    @Test
+    @DisplayName("HttpResponse debe enviar con chunked un cuerpo escrito sin Content-Length")
+    void testChunkedBody() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponse response = new HttpResponse(out, true, true);
+        byte[] large = new byte[20000];
+        try (OutputStream body = response.getOutputStream()) {
+            body.write("hello ".getBytes(StandardCharsets.US_ASCII));
+            body.write(large);
+        }
+        response.finish("ignored");
+
+        String text = out.toString(StandardCharsets.ISO_8859_1);
+        assertTrue(text.contains("Transfer-Encoding: chunked\r\n"));
+        assertFalse(text.contains("Content-Length"));
+        assertTrue(text.contains("\r\n\r\n6\r\nhello \r\n4e20\r\n"), "Cada parte debe ser un chunk");
+        assertTrue(text.endsWith("\r\n0\r\n\r\n"), "Debe terminar con el último chunk");
+        assertFalse(text.contains("ignored"), "El String del servicio se ignora si escribió el cuerpo");
+        assertThrows(IllegalStateException.class, () -> response.status(500), "Los headers ya se enviaron");
+        assertTrue(response.isKeepAlive());
+    }
+
+    @Test
+    @DisplayName("HttpResponse debe respetar el Content-Length del servicio y cerrar la conexión con HTTP/1.0")
+    void testFixedLengthAndHttp10() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        HttpResponse fixed = new HttpResponse(out, true, true);
+        fixed.header("Content-Length", "4");
+        fixed.getOutputStream().write(new byte[]{1, 2, 3, 4});
+        fixed.finish(null);
+        assertTrue(out.toString(StandardCharsets.ISO_8859_1).contains("Content-Length: 4\r\n"));
+        assertTrue(fixed.isKeepAlive());
+
+        HttpResponse shorter = new HttpResponse(new ByteArrayOutputStream(), true, true);
+        shorter.header("Content-Length", "4");
+        shorter.getOutputStream().write(1);
+        assertThrows(IOException.class, () -> shorter.finish(null), "El cuerpo no puede ser más corto que su tamaño");
+
+        ByteArrayOutputStream http10 = new ByteArrayOutputStream();
+        HttpResponse closing = new HttpResponse(http10, true, false);
+        closing.getOutputStream().write("data".getBytes(StandardCharsets.US_ASCII));
+        closing.finish(null);
+        assertTrue(http10.toString(StandardCharsets.US_ASCII).contains("Connection: close\r\n"));
+        assertTrue(http10.toString(StandardCharsets.US_ASCII).endsWith("\r\n\r\ndata"));
+        assertFalse(closing.isKeepAlive(), "El final del cuerpo se marca cerrando la conexión");
+    }
+
+    @Test
+    @DisplayName("HttpResponse sin conexión debe guardar el cuerpo en memoria")
+    void testBufferedResponse() throws IOException {
+        HttpResponse response = new HttpResponse();
+        response.getChannel().write(ByteBuffer.wrap(new byte[]{7, 8}));
+        response.finish(null);
+
+        assertArrayEquals(new byte[]{7, 8}, response.bufferedBody());
+        assertEquals(200, response.getStatus());
+    }
+}
@@ -1,15 +1,35 @@
 package com.mycompany.httpserver;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.DisplayName;
@@ -108,6 +128,258 @@ public class HttpServerIntegrationTest {
         assertTrue(response.contains("hello Michael you are 18 years old"), "Debe personalizar el saludo");
     }
 
+    @Test
+    @DisplayName("End-to-end: Servicio REST con parámetros en la ruta debe funcionar correctamente")
+    void testRESTServicePathParam() throws IOException {
+        String response = makeHttpRequest("GET /app/users/42 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertTrue(response.contains("HTTP/1.1 200 OK"), "Debe retornar 200 OK");
+        assertTrue(response.contains("user 42"), "Debe leer el parámetro de la ruta");
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servicio REST debe poder escribir su cuerpo por partes")
+    void testStreamingResponse() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/numbers?count=3 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/numbers?count=2 HTTP/1.0\r\nConnection: keep-alive\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+
+            assertTrue(response.contains("Content-Type: text/plain"), "Debe enviar el Content-Type del servicio");
+            assertTrue(response.contains("Transfer-Encoding: chunked\r\n"), "Debe usar chunked con HTTP/1.1");
+            assertTrue(response.contains("\r\n\r\n6\r\n1\n2\n3\n\r\n0\r\n\r\n"), "Debe enviar el cuerpo en chunks");
+            assertTrue(response.endsWith("Connection: close\r\n\r\n1\n2\n"), "Con HTTP/1.0 el cuerpo termina al cerrar la conexión");
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servicio asíncrono debe responder al completar o 504 al vencer su timeout")
+    void testAsyncService() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/delayed?ms=50 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/delayed?ms=3000 HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/hello?name=After HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+
+            assertTrue(response.contains("waited 50 ms"), "Debe enviar el resultado del futuro");
+            assertTrue(response.contains("HTTP/1.1 504 Gateway Timeout"), "Debe responder 504 al vencer el timeout de la ruta");
+            assertTrue(response.indexOf("504") < response.indexOf("hello After"), "Debe responder en orden");
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servicio que lanza una excepción debe responder 500 y la conexión debe seguir")
+    void testFailingService() throws IOException {
+        HttpServer.get("/failing", (req, res) -> {
+            throw new IllegalStateException("falla de prueba");
+        });
+        HttpServer.get("/failing-cached", (req, res) -> {
+            throw new IllegalStateException("falla de prueba");
+        }, 60_000);
+        HttpServer.get("/failing-stream", (req, res) -> {
+            try {
+                res.getOutputStream().write("parte".getBytes(StandardCharsets.US_ASCII));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            throw new IllegalStateException("falla de prueba");
+        });
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/failing HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/failing-cached HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/hello?name=After HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+
+            assertEquals(2, response.split("HTTP/1.1 500 Internal Server Error", -1).length - 1, "Debe responder 500 a los dos servicios");
+            assertTrue(response.contains("hello After"), "La conexión debe seguir después del 500");
+        }
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/failing-stream HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/hello?name=After HTTP/1.1\r\nHost: localhost\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), "Los headers ya se habían enviado");
+            assertTrue(!response.contains("0\r\n\r\n") && !response.contains("hello After"),
+                    "Debe cerrar la conexión sin terminar el cuerpo");
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servicio GET con TTL debe responder desde la cache")
+    void testCachedService() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        HttpServer.get("/cached-counter", (req, res) -> "call " + calls.incrementAndGet() + " " + req.getValue("a"), 60_000);
+
+        String first = makeHttpRequest("GET /app/cached-counter?a=1&b=2 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        String second = makeHttpRequest("GET /app/cached-counter?b=2&a=1 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        String other = makeHttpRequest("GET /app/cached-counter?a=3 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertTrue(first.contains("call 1 1"), "Debe ejecutar el servicio la primera vez");
+        assertTrue(second.contains("call 1 1"), "Los mismos parámetros en otro orden deben usar la cache");
+        assertTrue(second.contains("Connection: close"), "Debe usar los headers de la conexión actual");
+        assertTrue(other.contains("call 2 3"), "Otros parámetros deben ejecutar el servicio");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    @DisplayName("End-to-end: Ruta con limite debe responder 429 cuando el cliente no tiene tokens")
+    void testRateLimit() throws IOException {
+        HttpServer.get("/limited", (req, res) -> "from " + req.getRemoteAddress());
+        HttpServer.rateLimit("/limited", 0.01, 2);
+
+        String first = makeHttpRequest("GET /app/limited HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        String second = makeHttpRequest("GET /app/limited HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        String third = makeHttpRequest("GET /app/limited HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        assertTrue(first.contains("HTTP/1.1 200 OK") && first.contains("from 127.0.0.1"), "El servicio debe conocer la IP del cliente");
+        assertTrue(second.contains("HTTP/1.1 200 OK"), "La rafaga debe permitirse");
+        assertTrue(third.contains("HTTP/1.1 429 Too Many Requests"), "Sin tokens debe responder 429");
+        assertTrue(third.contains("RateLimit-Limit: 2\r\n") && third.contains("RateLimit-Remaining: 0\r\n"));
+        assertTrue(third.contains("Retry-After: 100\r\n"), "Debe indicar cuándo habrá un token");
+        assertEquals(1, HttpServer.getRateLimited("/limited"));
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe publicar las respuestas y latencias por ruta en /metrics")
+    void testMetricsEndpoint() throws IOException {
+        HttpServer.get("/measured/{id}", (req, res) -> "item " + req.getPathParam("id"));
+        makeHttpRequest("GET /app/measured/1 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        makeHttpRequest("GET /app/measured/2 HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+        String response;
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            // La primera respuesta se registra antes de armar la segunda
+            socket.getOutputStream().write(("GET /metrics HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /metrics HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            // El texto de las metricas es mas largo de lo que lee makeHttpRequest
+            response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            response = response.substring(response.lastIndexOf("HTTP/1.1 200 OK"));
+        }
+
+        assertTrue(response.contains("HTTP/1.1 200 OK") && response.contains("Content-Type: text/plain; version=0.0.4"));
+        assertTrue(response.contains("# TYPE http_server_request_duration_seconds histogram"));
+        assertTrue(response.contains("http_server_responses_total{method=\"GET\",handler=\"/measured/{id}\",status=\"2xx\"} 2\n"),
+                "Debe contar las respuestas de la ruta, no de cada path");
+        assertTrue(response.contains("http_server_request_duration_seconds_bucket{method=\"GET\",handler=\"/measured/{id}\",le=\"+Inf\"} 2\n"));
+        assertTrue(response.contains("http_server_request_duration_seconds_count{method=\"GET\",handler=\"/measured/{id}\"} 2\n"));
+        assertTrue(response.contains("http_server_timeouts_total{type=\"header_read\"}"));
+        assertTrue(response.contains("http_server_responses_total{method=\"\",handler=\"admin\",status=\"2xx\"}"),
+                "Las solicitudes de las métricas también deben registrarse");
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe registrar eventos de Flight Recorder y descargar la grabación")
+    void testFlightRecording() throws Exception {
+        HttpServer.get("/recorded", (req, res) -> "recorded");
+        HttpServer.flightRecording("/admin/recording", 60_000);
+        Path dump = Files.createTempFile("test-", ".jfr");
+        // Sin umbral se graban todas las solicitudes, no solo las lentas
+        try (Recording all = new Recording()) {
+            all.enable("com.mycompany.httpserver.Request").withThreshold(Duration.ZERO);
+            all.enable("com.mycompany.httpserver.Routing").withThreshold(Duration.ZERO);
+            all.start();
+            makeHttpRequest("GET /app/recorded HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+
+            try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+                socket.setSoTimeout(10_000);
+                socket.getOutputStream().write("GET /admin/recording HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+                InputStream in = new BufferedInputStream(socket.getInputStream());
+                String headers = readHeaders(in);
+                assertTrue(headers.contains("HTTP/1.1 200 OK") && headers.contains("Content-Type: application/octet-stream"));
+                byte[] body = in.readAllBytes();
+                assertTrue(headers.contains("Content-Length: " + body.length + "\r\n"), "Debe enviar la grabación completa");
+                Files.write(dump, body);
+            }
+            assertEquals(List.of(), temporaryRecordings(), "El archivo temporal debe borrarse después de enviarlo");
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+            RecordedEvent request = events.stream()
+                    .filter(e -> e.getEventType().getName().equals("com.mycompany.httpserver.Request"))
+                    .filter(e -> "/app/recorded".equals(e.getString("path")))
+                    .findFirst().orElseThrow();
+            assertEquals("/recorded", request.getString("handler"), "El evento debe llevar la ruta");
+            assertEquals(200, request.getInt("status"));
+            assertTrue(events.stream().anyMatch(e -> e.getEventType().getName().equals("com.mycompany.httpserver.Routing")),
+                    "Cada fase debe tener su evento");
+        } finally {
+            HttpServer.noFlightRecording();
+            Files.deleteIfExists(dump);
+        }
+        assertThrows(IllegalStateException.class, () -> HttpServer.dumpFlightRecording(dump));
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe cerrar una conexión que envía los headers byte a byte")
+    void testSlowHeadersTimeout() throws Exception {
+        long before = HttpServer.getTimeouts(TimeoutType.HEADER_READ);
+        HttpServer.timeouts(300, 30_000, 30_000);
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            long start = System.currentTimeMillis();
+            boolean closed = false;
+            // Cada byte llega antes del timeout de lectura pero los headers nunca terminan
+            for (int i = 0; i < 40 && !closed; i++) {
+                try {
+                    socket.getOutputStream().write('X');
+                    socket.getOutputStream().flush();
+                    Thread.sleep(50);
+                } catch (SocketException e) {
+                    closed = true;
+                }
+            }
+            if (!closed) {
+                try {
+                    closed = socket.getInputStream().read() == -1;
+                } catch (SocketException e) {
+                    closed = true;
+                }
+            }
+            assertTrue(closed, "La conexión debe cerrarse al vencer el plazo de los headers");
+            assertTrue(System.currentTimeMillis() - start < 3000, "El plazo es de toda la solicitud, no de cada byte");
+        } finally {
+            HttpServer.timeouts(10_000, 30_000, 30_000);
+        }
+        assertEquals(before + 1, HttpServer.getTimeouts(TimeoutType.HEADER_READ));
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe responder 405 con Allow y HEAD sin cuerpo")
+    void testMethodHandling() throws IOException {
+        String wrongMethod = makeHttpRequest("POST /app/hello HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+        assertTrue(wrongMethod.contains("HTTP/1.1 405 Method Not Allowed"), "Debe retornar 405 para un método sin ruta");
+        assertTrue(wrongMethod.contains("Allow: GET, HEAD\r\n"), "Debe indicar los métodos permitidos");
+
+        String staticPost = makeHttpRequest("POST /index.html HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\nConnection: close\r\n\r\n");
+        assertTrue(staticPost.contains("HTTP/1.1 405 Method Not Allowed"), "Los archivos estáticos solo aceptan GET y HEAD");
+
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "HEAD /styles/style.css HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "HEAD /app/hello?name=Head HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/hello?name=After HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+            assertEquals(3, response.split("HTTP/1.1 200 OK", -1).length - 1, "Debe responder las 3 solicitudes");
+            assertTrue(response.contains("text/css"), "HEAD debe enviar los headers del archivo");
+            assertTrue(!response.contains("body {") && !response.contains("hello Head"), "HEAD no debe enviar el cuerpo");
+            assertTrue(response.endsWith("hello After you are  years old"), "La siguiente respuesta debe seguir intacta");
+        }
+    }
+
     @Test
     @DisplayName("End-to-end: Servidor debe manejar errores 404 correctamente")
     void testNotFoundHandling() throws IOException {
@@ -176,6 +448,165 @@ public class HttpServerIntegrationTest {
         assertTrue(response.contains("hello "), "Debe manejar nombre vacío");
     }
 
+    @Test
+    @DisplayName("End-to-end: Servidor debe responder varias solicitudes en la misma conexión")
+    void testKeepAlivePipelinedRequests() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/hello?name=First HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /styles/style.css HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/hello?name=Last HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+
+            assertEquals(3, response.split("HTTP/1.1 200 OK", -1).length - 1, "Debe responder las 3 solicitudes");
+            assertTrue(response.indexOf("hello First") < response.indexOf("text/css"), "Debe responder en orden");
+            assertTrue(response.indexOf("text/css") < response.indexOf("hello Last"), "Debe responder en orden");
+            assertTrue(response.contains("Connection: keep-alive"), "Debe mantener la conexión abierta");
+            assertTrue(response.contains("Connection: close"), "Debe cerrar la conexión cuando el cliente lo pide");
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe responder 400 a solicitudes mal formadas")
+    void testMalformedRequest() throws IOException {
+        String response = makeHttpRequest("GET /index html HTTP/1.1\r\nHost: localhost\r\n\r\n");
+
+        assertTrue(response.contains("HTTP/1.1 400 Bad Request"), "Debe retornar 400 Bad Request");
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servicio POST debe leer cuerpos con Content-Length y chunked")
+    void testRequestBody() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "POST /app/upload HTTP/1.1\r\nHost: localhost\r\nContent-Length: 11\r\n\r\nhello world"
+                    + "POST /app/upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "5\r\nhello\r\n3\r\n!!!\r\n0\r\n\r\n"
+                    + "GET /app/hello?name=After HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+            String response = new String(socket.getInputStream().readAllBytes());
+
+            assertTrue(response.contains("received 11 bytes"), "Debe leer el cuerpo con Content-Length");
+            assertTrue(response.contains("received 8 bytes"), "Debe decodificar el cuerpo chunked");
+            assertTrue(response.contains("hello After"), "El cuerpo no debe dañar la siguiente solicitud");
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Archivos que no caben en la cache deben enviarse completos desde el disco")
+    void testLargeStaticFile() throws IOException {
+        byte[] content = new byte[256 * 1024];
+        new Random(7).nextBytes(content);
+        Path file = Paths.get("target/classes/webroot/images/large-test.png");
+        Files.write(file, content);
+        // Con este límite el archivo no entra en la cache y se envía con transferTo
+        HttpServer.staticCache(64 * 1024, 1000);
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /images/large-test.png HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /images/large-test.png HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            for (int i = 0; i < 2; i++) {
+                String headers = readHeaders(in);
+                assertTrue(headers.contains("Content-Length: " + content.length), "Debe enviar el tamaño del archivo");
+                byte[] body = new byte[content.length];
+                in.readFully(body);
+                assertArrayEquals(content, body, "Debe enviar el archivo sin cambios");
+            }
+            assertEquals(-1, in.read(), "No debe enviar bytes de más");
+        } finally {
+            HttpServer.staticCache(32 * 1024 * 1024, 1000);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe responder solicitudes Range con 206 y 416")
+    void testRangeRequests() throws IOException {
+        String single = makeHttpRequest("GET /styles/style.css HTTP/1.1\r\nHost: localhost\r\nRange: bytes=0-9\r\nConnection: close\r\n\r\n");
+        assertTrue(single.contains("HTTP/1.1 206 Partial Content"), "Debe retornar 206 para un rango");
+        assertTrue(single.contains("Content-Length: 10\r\n"), "Debe enviar solo el rango");
+        assertTrue(single.matches("(?s).*Content-Range: bytes 0-9/\\d+\r\n.*"), "Debe indicar el rango enviado");
+
+        String multi = makeHttpRequest("GET /styles/style.css HTTP/1.1\r\nHost: localhost\r\nRange: bytes=0-4,-5\r\nConnection: close\r\n\r\n");
+        assertTrue(multi.contains("Content-Type: multipart/byteranges; boundary="), "Varios rangos van en multipart");
+        assertEquals(2, multi.split("Content-Range: bytes ", -1).length - 1, "Debe enviar las dos partes");
+
+        String unsatisfiable = makeHttpRequest("GET /styles/style.css HTTP/1.1\r\nHost: localhost\r\nRange: bytes=99999999-\r\nConnection: close\r\n\r\n");
+        assertTrue(unsatisfiable.contains("HTTP/1.1 416 Range Not Satisfiable"), "Debe retornar 416");
+        assertTrue(unsatisfiable.contains("Content-Range: bytes */"), "Debe indicar el tamaño del archivo");
+
+        String changed = makeHttpRequest("GET /styles/style.css HTTP/1.1\r\nHost: localhost\r\nRange: bytes=0-9\r\n"
+                + "If-Range: Sun, 06 Nov 1994 08:49:37 GMT\r\nConnection: close\r\n\r\n");
+        assertTrue(changed.contains("HTTP/1.1 200 OK"), "Si el archivo cambió debe enviarlo completo");
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe comprimir los archivos de texto cuando el cliente lo acepta")
+    void testCompressedStaticFile() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, SERVER_PORT)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(("GET /styles/style.css HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Accept-Encoding: gzip, deflate\r\nConnection: close\r\n\r\n").getBytes());
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String headers = readHeaders(in);
+            assertTrue(headers.contains("Content-Encoding: gzip"), "Debe enviar la versión gzip");
+            assertTrue(headers.contains("Vary: Accept-Encoding"), "Debe indicar que la respuesta depende de Accept-Encoding");
+
+            String css = new String(new GZIPInputStream(in).readAllBytes());
+            assertTrue(css.contains("{"), "Debe poder descomprimirse");
+        }
+    }
+
+    @Test
+    @DisplayName("End-to-end: Servidor debe responder 304 cuando el archivo no cambió")
+    void testConditionalGet() throws IOException {
+        String first = makeHttpRequest("GET /scripts/script.js HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n");
+        String etag = first.replaceAll("(?s).*ETag: (\"[^\"]+\").*", "$1");
+        String lastModified = first.replaceAll("(?s).*Last-Modified: ([^\r]+)\r\n.*", "$1");
+        assertTrue(etag.startsWith("\""), "Debe enviar un ETag");
+
+        String byEtag = makeHttpRequest("GET /scripts/script.js HTTP/1.1\r\nHost: localhost\r\n"
+                + "If-None-Match: \"otro\", " + etag + "\r\nConnection: close\r\n\r\n");
+        assertTrue(byEtag.contains("HTTP/1.1 304 Not Modified"), "Debe retornar 304 con el mismo ETag");
+        assertTrue(!byEtag.contains("function"), "Un 304 no tiene cuerpo");
+
+        String byDate = makeHttpRequest("GET /scripts/script.js HTTP/1.1\r\nHost: localhost\r\n"
+                + "If-Modified-Since: " + lastModified + "\r\nConnection: close\r\n\r\n");
+        assertTrue(byDate.contains("HTTP/1.1 304 Not Modified"), "Debe retornar 304 con la misma fecha");
+
+        String changed = makeHttpRequest("GET /scripts/script.js HTTP/1.1\r\nHost: localhost\r\n"
+                + "If-None-Match: \"otro\"\r\nIf-Modified-Since: " + lastModified + "\r\nConnection: close\r\n\r\n");
+        assertTrue(changed.contains("HTTP/1.1 200 OK"), "If-None-Match tiene prioridad sobre If-Modified-Since");
+    }
+
+    /**
+     * Archivos temporales que deja sendRecording
+     */
+    private static List<Path> temporaryRecordings() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(f -> f.getFileName().toString().matches("http-server-\\d+\\.jfr")).toList();
+        }
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        while (headers.indexOf("\r\n\r\n") < 0) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            headers.append((char) b);
+        }
+        return headers.toString();
+    }
+
     /**
      * Método auxiliar para realizar peticiones HTTP
      */
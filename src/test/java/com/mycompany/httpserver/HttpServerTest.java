@@ -1,13 +1,20 @@
 package com.mycompany.httpserver;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -69,4 +76,68 @@ public class HttpServerTest {
         assertEquals("/index.html", parts[1], "Debe extraer URI correctamente");
         assertEquals("HTTP/1.1", parts[2], "Debe extraer versión HTTP correctamente");
     }
+
+    @Test
+    @DisplayName("HttpServer debe abrir varios listeners en el mismo puerto y repartir las conexiones")
+    void testReusePortListeners() throws Exception {
+        try (ServerSocketChannel probe = ServerSocketChannel.open()) {
+            assumeTrue(probe.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT), "Requiere SO_REUSEPORT");
+        }
+        ServerSocketChannel[] listeners = HttpServer.openListeners(0, 2);
+        List<Socket> clients = new ArrayList<>();
+        try {
+            int port = ((InetSocketAddress) listeners[0].getLocalAddress()).getPort();
+            assertEquals(port, ((InetSocketAddress) listeners[1].getLocalAddress()).getPort(), "Los listeners comparten el puerto");
+            for (ServerSocketChannel listener : listeners) {
+                listener.configureBlocking(false);
+            }
+            for (int i = 0; i < 64; i++) {
+                clients.add(new Socket("localhost", port));
+            }
+
+            // El kernel reparte las conexiones por el hash de cada puerto de origen
+            int[] accepted = new int[2];
+            long deadline = System.currentTimeMillis() + 5000;
+            while (accepted[0] + accepted[1] < 64 && System.currentTimeMillis() < deadline) {
+                for (int i = 0; i < 2; i++) {
+                    SocketChannel channel;
+                    while ((channel = listeners[i].accept()) != null) {
+                        accepted[i]++;
+                        channel.close();
+                    }
+                }
+            }
+            assertEquals(64, accepted[0] + accepted[1]);
+            assertTrue(accepted[0] > 0 && accepted[1] > 0, "Cada listener debe recibir conexiones");
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+            for (ServerSocketChannel listener : listeners) {
+                listener.close();
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("HttpServer debe permitir registrar políticas de Cache-Control mientras atiende solicitudes")
+    void testCacheControlRegisteredAtRuntime() throws InterruptedException {
+        HttpServer.cacheControl("/cache-control-test/", "no-cache");
+        int added = 500;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < added; i++) {
+                HttpServer.cacheControl("/cache-control-test/" + i + "/", "max-age=" + i);
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            assertEquals("no-cache", HttpServer.cacheControlFor("/cache-control-test/style.css"));
+            String value = HttpServer.cacheControlFor("/cache-control-test/7/style.css");
+            assertTrue(value.equals("no-cache") || value.equals("max-age=7"), "Debe usar una política completa");
+        }
+        writer.join();
+
+        assertEquals("max-age=7", HttpServer.cacheControlFor("/cache-control-test/7/style.css"), "Gana el prefijo más largo");
+        assertEquals("max-age=499", HttpServer.cacheControlFor("/cache-control-test/499/a.js"));
+    }
 }
@@ -0,0 +1,51 @@
+package com.mycompany.httpserver.LoadGenerator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para el histograma de latencias del generador de carga
+ * Verifica la precision de los percentiles y la correccion de la omision
+ * coordinada
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    @DisplayName("Los percentiles deben estar dentro del 0.1% del valor real")
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 1_000_000; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(1_000_000, histogram.getCount());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000.5, histogram.getMean(), 0.001);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            long expected = (long) (percentile * 10_000);
+            long actual = histogram.percentile(percentile);
+            assertTrue(actual >= expected && actual <= expected * 1.001,
+                    "El percentil " + percentile + " debe ser cercano a " + expected + " y fue " + actual);
+        }
+        assertEquals(1_000_000, histogram.percentile(100));
+        assertEquals(0, new LatencyHistogram().percentile(99), "Sin muestras el percentil es 0");
+    }
+
+    @Test
+    @DisplayName("La correccion debe agregar las solicitudes que el cliente no envio durante una pausa")
+    void testCoordinatedOmissionCorrection() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 99 respuestas de 1 ms y una pausa del servidor de 100 ms
+        histogram.record(1000, 99);
+        histogram.record(100_000);
+
+        assertEquals(1000, histogram.percentile(99), "Sin corregir la pausa solo afecta a una muestra");
+
+        LatencyHistogram corrected = histogram.corrected(1000);
+        assertEquals(199, corrected.getCount(), "Durante la pausa se debian enviar 99 solicitudes mas");
+        assertTrue(corrected.percentile(90) >= 80_000, "La pausa debe aparecer en los percentiles altos");
+        assertEquals(100, histogram.getCount(), "El histograma original no cambia");
+    }
+}
@@ -0,0 +1,300 @@
+package com.mycompany.httpserver;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas de integración para el motor NIO
+ * Verifica el pipeline, los cuerpos que llegan en varias lecturas, los
+ * servicios asíncronos y las respuestas que no caben en el buffer del socket
+ */
+public class NioServerTest {
+
+    private static final String SERVER_HOST = "localhost";
+    private static final int STREAM_SIZE = 4 * 1024 * 1024;
+
+    private static ServerSocketChannel listener;
+    private static int port;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        HttpServer.staticfiles("/webroot");
+        HttpServer.get("/nio/hello", (req, res) -> "hello " + req.getValue("name"));
+        HttpServer.post("/nio/echo", (req, res) -> {
+            try {
+                return "received " + req.getBodyAsString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        HttpServer.getAsync("/nio/delayed", (req, res) -> CompletableFuture.supplyAsync(() -> "waited",
+                CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS)));
+        HttpServer.get("/nio/stream", (req, res) -> {
+            try {
+                OutputStream out = res.getOutputStream();
+                byte[] block = new byte[8192];
+                Arrays.fill(block, (byte) 'x');
+                for (int i = 0; i < STREAM_SIZE / block.length; i++) {
+                    out.write(block);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+
+        // El motor se inicia directamente para no cambiar el de las demás pruebas
+        listener = HttpServer.openListeners(0, 1)[0];
+        port = ((InetSocketAddress) listener.getLocalAddress()).getPort();
+        NioServer server = new NioServer(new ServerSocketChannel[]{listener}, 2, 5000, 100);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.out.println("Servidor terminado: " + e.getMessage());
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+    }
+
+    @AfterAll
+    static void stopServer() throws IOException {
+        listener.close();
+    }
+
+    @Test
+    @DisplayName("NIO: Solicitudes en pipeline deben responderse en orden en la misma conexión")
+    void testPipelinedRequests() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/nio/hello?name=a HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /index.html HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/nio/hello?name=b HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+
+            assertEquals(3, response.split("HTTP/1.1 200 OK", -1).length - 1, "Debe responder las tres solicitudes");
+            int first = response.indexOf("hello a");
+            int page = response.indexOf("<html", first);
+            int last = response.indexOf("hello b", page);
+            assertTrue(first >= 0 && page > first && last > page, "Las respuestas deben llegar en el orden de las solicitudes");
+        }
+    }
+
+    @Test
+    @DisplayName("NIO: Un cuerpo que llega en varias lecturas debe entregarse completo al servicio")
+    void testBodySplitAcrossReads() throws Exception {
+        try (Socket socket = new Socket(SERVER_HOST, port)) {
+            socket.setSoTimeout(5000);
+            socket.setTcpNoDelay(true);
+            OutputStream out = socket.getOutputStream();
+            out.write("POST /app/nio/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 11\r\nConnection: close\r\n\r\nhello".getBytes());
+            out.flush();
+            Thread.sleep(200);
+            out.write(" world".getBytes());
+            out.flush();
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+
+            assertTrue(response.startsWith("HTTP/1.1 200 OK"), "Debe esperar el resto del cuerpo");
+            assertTrue(response.contains("received hello world"), "El servicio debe leer el cuerpo completo");
+        }
+    }
+
+    @Test
+    @DisplayName("NIO: Un archivo que no está en la cache debe responderse en orden con los demás")
+    void testStaticFileCacheMiss() throws IOException {
+        Path file = Paths.get("target/classes/webroot/styles/nio-miss-test.css");
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "body { color: red; }");
+        try (Socket socket = new Socket(SERVER_HOST, port)) {
+            socket.setSoTimeout(5000);
+            // La primera lectura del archivo va fuera del reactor, la segunda sale de la cache
+            socket.getOutputStream().write((
+                    "GET /styles/nio-miss-test.css HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /styles/nio-miss-test.css HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/nio/hello?name=last HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+
+            int first = response.indexOf("color: red");
+            int second = response.indexOf("color: red", first + 1);
+            assertTrue(first >= 0 && second > first, "Debe enviar el archivo en las dos respuestas");
+            assertTrue(response.indexOf("hello last") > second, "La respuesta del servicio debe llegar al final");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("NIO: Un servicio asíncrono debe responder sin bloquear el pipeline")
+    void testAsyncRoute() throws IOException {
+        try (Socket socket = new Socket(SERVER_HOST, port)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/nio/delayed HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/nio/hello?name=after HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+
+            int waited = response.indexOf("waited");
+            assertTrue(waited >= 0, "Debe enviar la respuesta del servicio asíncrono");
+            assertTrue(response.indexOf("hello after") > waited, "La siguiente solicitud debe responderse después");
+        }
+
+        // Mientras el servicio espera, el reactor atiende otras conexiones
+        try (Socket slow = new Socket(SERVER_HOST, port); Socket other = new Socket(SERVER_HOST, port)) {
+            slow.setSoTimeout(5000);
+            other.setSoTimeout(5000);
+            slow.getOutputStream().write("GET /app/nio/delayed HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+            other.getOutputStream().write("GET /app/nio/hello?name=other HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+
+            assertTrue(new String(other.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1).contains("hello other"));
+            assertTrue(new String(slow.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1).contains("waited"));
+        }
+    }
+
+    @Test
+    @DisplayName("NIO: Un archivo más grande que el buffer del socket debe enviarse completo")
+    void testStaticFileLargerThanSocketBuffer() throws Exception {
+        byte[] content = new byte[2 * 1024 * 1024];
+        new Random(11).nextBytes(content);
+        Path file = Paths.get("target/classes/webroot/images/nio-large-test.png");
+        Files.write(file, content);
+        // Con este límite el archivo no entra en la cache y se envía con transferTo
+        HttpServer.staticCache(64 * 1024, 1000);
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(16 * 1024);
+            socket.connect(new InetSocketAddress(SERVER_HOST, port));
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /images/nio-large-test.png HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/nio/hello?name=next HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            // El cliente no lee todavía, el reactor debe esperar a que el socket acepte más
+            Thread.sleep(300);
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            String headers = readHeaders(in);
+            assertTrue(headers.contains("Content-Length: " + content.length), "Debe enviar el tamaño del archivo");
+            byte[] body = new byte[content.length];
+            in.readFully(body);
+            assertArrayEquals(content, body, "Debe enviar el archivo sin cambios");
+            String next = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(next.contains("hello next"), "La siguiente respuesta debe llegar después del archivo");
+        } finally {
+            HttpServer.staticCache(32 * 1024 * 1024, 1000);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    @DisplayName("NIO: El cuerpo de un servicio debe enviarse mientras lo escribe aunque el cliente lea lento")
+    void testStreamedServiceBody() throws Exception {
+        try (Socket socket = new Socket()) {
+            socket.setReceiveBufferSize(16 * 1024);
+            socket.connect(new InetSocketAddress(SERVER_HOST, port));
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write((
+                    "GET /app/nio/stream HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "GET /app/nio/hello?name=streamed HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+            Thread.sleep(300);
+
+            // Mientras el servicio espera al cliente el reactor atiende otras conexiones
+            try (Socket other = new Socket(SERVER_HOST, port)) {
+                other.setSoTimeout(5000);
+                other.getOutputStream().write("GET /app/nio/hello?name=other HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes());
+                assertTrue(new String(other.getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1).contains("hello other"));
+            }
+
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            String headers = readHeaders(in);
+            assertTrue(headers.contains("Transfer-Encoding: chunked"), "Sin Content-Length el cuerpo va en chunks");
+            byte[] body = new ChunkedInputStream(in, STREAM_SIZE).readAllBytes();
+            assertEquals(STREAM_SIZE, body.length, "Debe enviar el cuerpo completo");
+            String next = new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(next.contains("hello streamed"), "La siguiente respuesta debe llegar después del cuerpo");
+        }
+    }
+
+    @Test
+    @DisplayName("NIO: Las solicitudes incompletas no deben superar la memoria del reactor")
+    void testBufferedBytesBudget() throws Exception {
+        // Un reactor que guarda hasta 64 KB de solicitudes incompletas
+        ServerSocketChannel small = HttpServer.openListeners(0, 1)[0];
+        int smallPort = ((InetSocketAddress) small.getLocalAddress()).getPort();
+        NioServer server = new NioServer(new ServerSocketChannel[]{small}, 1, 5000, 100, 64 * 1024);
+        Thread serverThread = new Thread(() -> {
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.out.println("Servidor terminado: " + e.getMessage());
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+
+        // Cada conexión deja 10 KB de un cuerpo de 20 KB, llegan en una sola lectura
+        String partial = "POST /app/nio/echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 20480\r\nConnection: close\r\n\r\n"
+                + "a".repeat(10 * 1024);
+        Socket[] uploads = new Socket[7];
+        try {
+            for (int i = 0; i < uploads.length; i++) {
+                uploads[i] = new Socket(SERVER_HOST, smallPort);
+                uploads[i].setSoTimeout(5000);
+                uploads[i].getOutputStream().write(partial.getBytes());
+                Thread.sleep(100);
+            }
+
+            // Con seis conexiones el presupuesto se agota, la séptima recibe un 503
+            String rejected = new String(uploads[6].getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(rejected.startsWith("HTTP/1.1 503 Service Unavailable"), "Debe rechazar la solicitud que supera el presupuesto");
+            assertTrue(rejected.contains("Retry-After: "), "Debe indicar cuándo reintentar");
+
+            // Las solicitudes que ya estaban guardadas se completan normalmente
+            uploads[0].getOutputStream().write("b".repeat(10 * 1024).getBytes());
+            String accepted = new String(uploads[0].getInputStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+            assertTrue(accepted.startsWith("HTTP/1.1 200 OK"), "La primera solicitud debe atenderse");
+            assertTrue(accepted.contains("received " + "a".repeat(10 * 1024) + "b"), "Debe recibir el cuerpo completo");
+        } finally {
+            for (Socket upload : uploads) {
+                if (upload != null) {
+                    upload.close();
+                }
+            }
+            small.close();
+        }
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        StringBuilder headers = new StringBuilder();
+        while (headers.indexOf("\r\n\r\n") < 0) {
+            int b = in.read();
+            if (b < 0) {
+                break;
+            }
+            headers.append((char) b);
+        }
+        return headers.toString();
+    }
+}
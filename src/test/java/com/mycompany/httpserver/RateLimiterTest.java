@@ -0,0 +1,85 @@
+package com.mycompany.httpserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para el limite de solicitudes por cliente
+ * Verifica la rafaga, la recarga de tokens y el limite de memoria
+ */
+public class RateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    @DisplayName("El limite debe permitir la rafaga y rechazar hasta que se recargue un token")
+    void testBurstAndRefill() {
+        RateLimiter limiter = new RateLimiter(2, 3);
+        long now = System.nanoTime();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire("10.0.0.1", now), "La rafaga debe permitirse completa");
+        }
+        long wait = limiter.acquire("10.0.0.1", now);
+        assertEquals(SECOND / 2, wait, "Debe esperar un intervalo por el siguiente token");
+        assertEquals(1, limiter.getRejected());
+
+        assertEquals(0, limiter.acquire("10.0.0.1", now + wait), "Despues de esperar debe tener un token");
+        assertTrue(limiter.acquire("10.0.0.1", now + wait) > 0);
+        assertEquals(0, limiter.acquire("10.0.0.2", now), "Cada IP tiene su propio cubo");
+    }
+
+    @Test
+    @DisplayName("El limite debe acotar la memoria con muchas IPs distintas")
+    void testBucketBound() {
+        RateLimiter limiter = new RateLimiter(1, 1, 32);
+        long now = System.nanoTime();
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(0, limiter.acquire("10.1." + (i >> 8) + "." + (i & 0xff), now),
+                    "Cada cliente nuevo debe recibir su propio cubo");
+        }
+        assertTrue(limiter.getBucketCount() <= 32, "Los cubos anteriores deben descartarse cuando el mapa está lleno");
+        assertEquals(0, limiter.getRejected());
+
+        // Un segundo despues los cubos estan llenos otra vez y se pueden descartar
+        for (int i = 0; i < 10_000; i++) {
+            assertEquals(0, limiter.acquire("10.2." + (i >> 8) + "." + (i & 0xff), now + SECOND * (i + 1)),
+                    "Los cubos llenos deben liberarse para los clientes nuevos");
+        }
+        assertTrue(limiter.getBucketCount() <= 32);
+    }
+
+    @Test
+    @DisplayName("Un cliente que rota su IP no debe dejar sin servicio a los clientes nuevos")
+    void testRotatingAddressesDoNotStarveNewClients() {
+        RateLimiter limiter = new RateLimiter(1, 1, 32);
+        long now = System.nanoTime();
+        for (int round = 0; round < 5; round++) {
+            long time = now + SECOND * round / 10;
+            for (int i = 0; i < 10_000; i++) {
+                limiter.acquire("10." + round + "." + (i >> 8) + "." + (i & 0xff), time);
+            }
+            String client = "192.168.0." + round;
+            assertEquals(0, limiter.acquire(client, time), "Un cliente nuevo no debe compartir el cubo de la inundacion");
+            assertTrue(limiter.acquire(client, time) > 0, "El cliente nuevo sigue limitado por su propio cubo");
+            assertTrue(limiter.getBucketCount() <= 32);
+        }
+    }
+
+    @Test
+    @DisplayName("Un cliente limitado debe conservar su cubo mientras llegan clientes nuevos")
+    void testThrottledClientKept() {
+        RateLimiter limiter = new RateLimiter(1, 2, 32);
+        long now = System.nanoTime();
+        assertEquals(0, limiter.acquire("192.168.0.1", now));
+        assertEquals(0, limiter.acquire("192.168.0.1", now));
+        // Los cubos de la inundacion usaron un solo token, estan mas cerca de llenarse
+        for (int i = 0; i < 10_000; i++) {
+            limiter.acquire("10.1." + (i >> 8) + "." + (i & 0xff), now);
+        }
+        assertTrue(limiter.acquire("192.168.0.1", now) > 0,
+                "El cubo del cliente limitado no debe descartarse antes que los que estan por llenarse");
+    }
+}
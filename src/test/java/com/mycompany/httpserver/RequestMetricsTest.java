@@ -0,0 +1,59 @@
+package com.mycompany.httpserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para las metricas de una ruta
+ * Verifica los limites de las cubetas y el conteo desde varios hilos
+ */
+public class RequestMetricsTest {
+
+    @Test
+    @DisplayName("Cada latencia debe ir a la cubeta cuyo limite es el menor mayor o igual a ella")
+    void testBuckets() {
+        assertEquals(0, RequestMetrics.bucket(0));
+        assertEquals(0, RequestMetrics.bucket(64));
+        assertEquals(1, RequestMetrics.bucket(65));
+        assertEquals(1, RequestMetrics.bucket(96));
+        assertEquals(2, RequestMetrics.bucket(97));
+        assertEquals(RequestMetrics.BUCKETS - 1, RequestMetrics.bucket(Long.MAX_VALUE / 1000));
+        assertEquals("0.000064", RequestMetrics.bound(0));
+        assertEquals("+Inf", RequestMetrics.bound(RequestMetrics.BUCKETS - 1));
+
+        // Cada valor cae en su cubeta y no en la anterior
+        for (int i = 0; i < RequestMetrics.BUCKETS - 1; i++) {
+            long bound = Math.round(Double.parseDouble(RequestMetrics.bound(i)) * 1e6);
+            assertEquals(i, RequestMetrics.bucket(bound), "El limite " + bound + " es inclusivo");
+            assertEquals(i + 1, RequestMetrics.bucket(bound + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Las metricas deben contar todas las solicitudes registradas desde varios hilos")
+    void testConcurrentRecord() throws InterruptedException {
+        RequestMetrics metrics = new RequestMetrics("/test");
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(i % 10 == 0 ? 500 : 200, 1_000_000);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        long[] buckets = metrics.buckets();
+        assertEquals(80_000, buckets[RequestMetrics.bucket(1000)], "1 ms va a una sola cubeta");
+        assertEquals(72_000, metrics.responses(2));
+        assertEquals(8_000, metrics.responses(5));
+        assertEquals(80_000L * 1_000_000, metrics.sumNanos());
+    }
+}
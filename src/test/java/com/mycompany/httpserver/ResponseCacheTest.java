@@ -0,0 +1,74 @@
+package com.mycompany.httpserver;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la cache de respuestas de los servicios
+ * Verifica la llave normalizada, la expiración y los límites de la cache
+ */
+public class ResponseCacheTest {
+
+    @Test
+    @DisplayName("La llave debe ser la misma sin importar el orden de los parámetros")
+    void testNormalizedKey() throws URISyntaxException {
+        String key = ResponseCache.key(new HttpRequest(new URI("/app/hello?name=Ana&age=20")));
+
+        assertEquals("/app/hello?age=20&name=Ana", key);
+        assertEquals(key, ResponseCache.key(new HttpRequest(new URI("/app/hello?age=20&name=Ana"))));
+        assertEquals("/app/pi", ResponseCache.key(new HttpRequest(new URI("/app/pi"))));
+        assertNotEquals(ResponseCache.key(new HttpRequest(new URI("/app/x?a=1%262"))),
+                ResponseCache.key(new HttpRequest(new URI("/app/x?a=1&2"))), "Un & decodificado no separa parámetros");
+    }
+
+    @Test
+    @DisplayName("Una respuesta debe usarse hasta que expire")
+    void testExpiration() {
+        ResponseCache cache = new ResponseCache(10, 1024 * 1024);
+        ResponseCache.Entry entry = entry(10, 1_000);
+        cache.put("/app/pi", entry);
+
+        assertSame(entry, cache.get("/app/pi", 999));
+        assertNull(cache.get("/app/pi", 1_000), "Debe expirar al llegar su tiempo");
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getBytes());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    @DisplayName("La cache debe desalojar la respuesta usada hace más tiempo al pasar sus límites")
+    void testLimits() {
+        ResponseCache byEntries = new ResponseCache(2, 1024 * 1024);
+        byEntries.put("a", entry(10, Long.MAX_VALUE));
+        byEntries.put("b", entry(10, Long.MAX_VALUE));
+        byEntries.get("a", 0);
+        byEntries.put("c", entry(10, Long.MAX_VALUE));
+
+        assertNull(byEntries.get("b", 0), "b era la menos usada");
+        assertEquals(2, byEntries.getEntryCount());
+        assertEquals(1, byEntries.getEvictions());
+
+        long size = entry(100, 0).size();
+        ResponseCache byBytes = new ResponseCache(100, size * 5 / 2);
+        byBytes.put("a", entry(100, Long.MAX_VALUE));
+        byBytes.put("b", entry(100, Long.MAX_VALUE));
+        byBytes.put("c", entry(100, Long.MAX_VALUE));
+        byBytes.put("huge", entry(1000, Long.MAX_VALUE));
+
+        assertEquals(2, byBytes.getEntryCount());
+        assertNull(byBytes.get("huge", 0), "Una respuesta más grande que la cache no se guarda");
+        assertEquals(size * 2, byBytes.getBytes());
+    }
+
+    private static ResponseCache.Entry entry(int bodySize, long expiresAt) {
+        return new ResponseCache.Entry(new byte[20], new byte[16], new byte[bodySize], expiresAt);
+    }
+}
@@ -0,0 +1,118 @@
+package com.mycompany.httpserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para el router de servicios
+ * Verifica las rutas estáticas, los parámetros, los comodines y la prioridad entre ellos
+ */
+public class RouterTest {
+
+    private static final Service USERS = (req, res) -> "users";
+    private static final Service USER = (req, res) -> "user";
+    private static final Service ME = (req, res) -> "me";
+    private static final Service POST = (req, res) -> "post";
+    private static final Service FILES = (req, res) -> "files";
+
+    private Router router() {
+        Router router = new Router();
+        router.add("/users", USERS);
+        router.add("/users/{id}", USER);
+        router.add("/users/me", ME);
+        router.add("/users/{id}/posts/{postId}", POST);
+        router.add("/files/{path*}", FILES);
+        return router;
+    }
+
+    @Test
+    @DisplayName("Router debe encontrar rutas estáticas que comparten prefijos")
+    void testStaticRoutes() {
+        Router router = router();
+        router.add("/user", ME);
+
+        assertSame(USERS, router.match("/users", 0, null).service);
+        assertSame(ME, router.match("/user", 0, null).service);
+        assertNull(router.match("/use", 0, null));
+        assertNull(router.match("/usersx/1/2", 0, null));
+    }
+
+    @Test
+    @DisplayName("Router debe capturar los parámetros de la ruta en la solicitud")
+    void testPathParams() {
+        Router router = router();
+        HttpRequest request = new HttpRequest();
+
+        assertSame(POST, router.match("/app/users/42/posts/7", 4, request).service);
+        assertEquals("42", request.getPathParam("id"));
+        assertEquals("7", request.getPathParam("postId"));
+        assertNull(request.getPathParam("missing"));
+
+        assertSame(USER, router.match("/users/ana", 0, request).service);
+        assertEquals("ana", request.getPathParam("id"));
+        assertNull(router.match("/users/", 0, request), "Un parámetro no puede estar vacío");
+    }
+
+    @Test
+    @DisplayName("Router debe preferir rutas estáticas sobre parámetros y parámetros sobre comodines")
+    void testPriorityAndWildcards() {
+        Router router = router();
+        router.add("/users/*", FILES);
+        HttpRequest request = new HttpRequest();
+
+        assertSame(ME, router.match("/users/me", 0, request).service);
+        assertSame(USER, router.match("/users/mel", 0, request).service);
+        assertSame(FILES, router.match("/users/1/other", 0, request).service);
+        assertEquals("1/other", request.getPathParam("*"));
+
+        assertSame(FILES, router.match("/files/css/site/style.css", 0, request).service);
+        assertEquals("css/site/style.css", request.getPathParam("path"));
+    }
+
+    @Test
+    @DisplayName("Router debe rechazar rutas mal formadas y reemplazar rutas repetidas")
+    void testInvalidAndRepeatedRoutes() {
+        Router router = router();
+
+        assertThrows(IllegalArgumentException.class, () -> router.add("/a/{}", USER));
+        assertThrows(IllegalArgumentException.class, () -> router.add("/a/{id", USER));
+        assertThrows(IllegalArgumentException.class, () -> router.add("/a/{id}x", USER));
+        assertThrows(IllegalArgumentException.class, () -> router.add("/a/{rest*}/b", USER));
+
+        router.add("/users/{other}", ME);
+        HttpRequest request = new HttpRequest();
+        assertSame(ME, router.match("/users/5", 0, request).service, "La ruta repetida reemplaza el servicio");
+        assertEquals("5", request.getPathParam("other"));
+    }
+
+    @Test
+    @DisplayName("Router debe encontrar las rutas mientras otro hilo registra rutas nuevas")
+    void testConcurrentRegistration() throws InterruptedException {
+        Router router = router();
+        int added = 500;
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < added; i++) {
+                router.add("/added" + i + "/{a}/{b}/{c}", USERS);
+            }
+        });
+        HttpRequest request = new HttpRequest();
+        writer.start();
+        while (writer.isAlive()) {
+            assertSame(POST, router.match("/users/42/posts/7", 0, request).service);
+            assertEquals("7", request.getPathParam("postId"));
+            Router.Route route = router.match("/added7/1/2/3", 0, request);
+            if (route != null) {
+                assertEquals("3", request.getPathParam("c"), "Una ruta visible debe estar completa");
+            }
+        }
+        writer.join();
+
+        for (int i = 0; i < added; i++) {
+            assertSame(USERS, router.match("/added" + i + "/x/y/z", 0, request).service);
+        }
+    }
+}
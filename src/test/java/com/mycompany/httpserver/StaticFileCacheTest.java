@@ -0,0 +1,130 @@
+package com.mycompany.httpserver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Pruebas unitarias para la cache de archivos estáticos
+ * Verifica los aciertos, el desalojo LRU y la revalidación por fecha de modificación
+ */
+public class StaticFileCacheTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @DisplayName("Un archivo cacheado debe servirse desde memoria con sus headers")
+    void testHitAndMiss() throws IOException {
+        Path file = write("index.html", "<h1>hola</h1>");
+        StaticFileCache cache = new StaticFileCache(1024 * 1024, 60_000);
+
+        StaticFileCache.Entry first = cache.get(file, "text/html");
+        StaticFileCache.Entry second = cache.get(file, "text/html");
+
+        assertSame(first, second, "El segundo acceso debe usar la entrada cacheada");
+        assertArrayEquals("<h1>hola</h1>".getBytes(StandardCharsets.UTF_8), first.body);
+        String header = new String(first.header(true), StandardCharsets.US_ASCII);
+        assertTrue(header.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(header.contains("Content-Type: text/html\r\n"));
+        assertTrue(header.contains("Content-Length: 13\r\n"));
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    @DisplayName("La cache debe desalojar el archivo usado hace más tiempo al pasar el límite")
+    void testLruEviction() throws IOException {
+        Path a = write("a.txt", "a".repeat(300));
+        Path b = write("b.txt", "b".repeat(300));
+        Path c = write("c.txt", "c".repeat(300));
+        // Espacio para dos entradas pero no para tres
+        long entrySize = new StaticFileCache(1024 * 1024, 60_000).get(a, "text/plain").size();
+        StaticFileCache cache = new StaticFileCache(entrySize * 5 / 2, 60_000);
+
+        StaticFileCache.Entry entryA = cache.get(a, "text/plain");
+        cache.get(b, "text/plain");
+        // a pasa a ser el más reciente, b debe salir primero
+        assertSame(entryA, cache.get(a, "text/plain"));
+        cache.get(c, "text/plain");
+
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertSame(entryA, cache.get(a, "text/plain"), "a no debe haber sido desalojado");
+    }
+
+    @Test
+    @DisplayName("Un archivo modificado en disco debe volver a leerse")
+    void testRevalidation() throws IOException {
+        Path file = write("app.js", "var a = 1;");
+        StaticFileCache cache = new StaticFileCache(1024 * 1024, 0);
+
+        StaticFileCache.Entry first = cache.get(file, "text/javascript");
+        assertSame(first, cache.get(file, "text/javascript"), "Sin cambios debe seguir en cache");
+
+        Files.writeString(file, "var a = 22;");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(first.lastModified + 10_000));
+        StaticFileCache.Entry second = cache.get(file, "text/javascript");
+
+        assertArrayEquals("var a = 22;".getBytes(StandardCharsets.UTF_8), second.body);
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    @DisplayName("Los archivos grandes no se guardan en memoria y los que no existen devuelven null")
+    void testLargeAndMissingFiles() throws IOException {
+        Path big = write("big.png", "x".repeat(5000));
+        StaticFileCache cache = new StaticFileCache(4096, 60_000);
+
+        StaticFileCache.Entry entry = cache.get(big, "image/png");
+        assertNotNull(entry);
+        assertNull(entry.body, "El cuerpo debe leerse del disco");
+        assertEquals(5000, entry.length);
+        assertSame(entry, cache.get(big, "image/png"), "Sus headers deben quedar en cache");
+        assertTrue(cache.getBytes() < 5000, "El cuerpo no debe contar en la cache");
+
+        assertNull(cache.get(dir.resolve("missing.html"), "text/html"));
+        assertNull(cache.get(dir, "text/html"), "Un directorio no es un archivo estático");
+    }
+
+    @Test
+    @DisplayName("El ETag debe depender del contenido y cambiar con el archivo")
+    void testETag() throws IOException {
+        Path file = write("index.html", "<h1>hola</h1>");
+        Path copy = write("copy.html", "<h1>hola</h1>");
+        StaticFileCache cache = new StaticFileCache(1024 * 1024, 0);
+
+        StaticFileCache.Entry entry = cache.get(file, "text/html", "no-cache");
+        assertEquals(entry.identity.etag, cache.get(copy, "text/html").identity.etag, "Mismo contenido, mismo ETag");
+        assertTrue(entry.identity.etag.startsWith("\"") && entry.identity.etag.endsWith("\""), "Debe ser un ETag fuerte");
+        String notModified = new String(entry.identity.notModified(true), StandardCharsets.US_ASCII);
+        assertTrue(notModified.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+        assertTrue(notModified.contains("ETag: " + entry.identity.etag + "\r\n"));
+        assertTrue(notModified.contains("Cache-Control: no-cache\r\n"));
+        assertTrue(!notModified.contains("Content-Length"), "Un 304 no tiene cuerpo");
+
+        Files.writeString(file, "<h1>chao</h1>");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(entry.lastModified + 10_000));
+        assertNotEquals(entry.identity.etag, cache.get(file, "text/html", "no-cache").identity.etag);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+}
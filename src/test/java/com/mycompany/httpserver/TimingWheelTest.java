@@ -0,0 +1,50 @@
+package com.mycompany.httpserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para la rueda de timeouts
+ * Verifica el orden de vencimiento, las vueltas completas y la cancelación
+ */
+public class TimingWheelTest {
+
+    @Test
+    @DisplayName("La rueda debe ejecutar cada timeout en su tick y nunca antes")
+    void testExpiration() {
+        TimingWheel wheel = new TimingWheel(10, 8);
+        List<String> fired = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        wheel.schedule(() -> fired.add("late"), 500);
+        wheel.schedule(() -> fired.add("soon"), 30);
+
+        wheel.advance(start + 20);
+        assertTrue(fired.isEmpty(), "Ningún timeout debe vencer antes de su plazo");
+        wheel.advance(start + 60);
+        assertEquals(List.of("soon"), fired);
+        // 500 ms son varias vueltas de una rueda de 8 ranuras de 10 ms
+        wheel.advance(start + 400);
+        assertEquals(List.of("soon"), fired, "El timeout debe esperar las vueltas que le faltan");
+        wheel.advance(start + 600);
+        assertEquals(List.of("soon", "late"), fired);
+    }
+
+    @Test
+    @DisplayName("Un timeout cancelado no debe ejecutarse")
+    void testCancel() {
+        TimingWheel wheel = new TimingWheel(10, 8);
+        List<String> fired = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        TimingWheel.Timeout cancelled = wheel.schedule(() -> fired.add("cancelled"), 20);
+        wheel.schedule(() -> fired.add("kept"), 20);
+        cancelled.cancel();
+
+        wheel.advance(start + 100);
+        assertEquals(List.of("kept"), fired);
+    }
+}
@@ -213,16 +213,24 @@ public class WebFrameworkFunctionalityTest {
         HttpServer.get("/data", (req, res) -> "GET response");
         HttpServer.post("/data", (req, res) -> "POST response");
         
-        // Nota: La implementación actual usa el mismo mapa para GET y POST
-        // En una implementación más robusta, deberían ser independientes
         assertTrue(HttpServer.services.containsKey("/data"), 
             "La ruta /data debe estar registrada");
         
-        // El comportamiento actual sobrescribe GET con POST
+        // El mapa services conserva el último servicio registrado en la ruta
         Service dataService = HttpServer.services.get("/data");
         String result = dataService.executeService(new HttpRequest(null), new HttpResponse());
         assertEquals("POST response", result, 
             "Debe retornar la respuesta del último servicio registrado");
+
+        // Cada método tiene su propia tabla de rutas, POST no reemplaza a GET
+        Service getService = HttpServer.matchRoute("GET", "/app/data", null).service;
+        Service postService = HttpServer.matchRoute("POST", "/app/data", null).service;
+        assertEquals("GET response", getService.executeService(new HttpRequest(null), new HttpResponse()),
+            "GET debe conservar su servicio");
+        assertEquals("POST response", postService.executeService(new HttpRequest(null), new HttpResponse()),
+            "POST debe tener su propio servicio");
+        assertEquals(getService, HttpServer.matchRoute("HEAD", "/app/data", null).service,
+            "HEAD debe usar el servicio GET");
     }
 
     @Test
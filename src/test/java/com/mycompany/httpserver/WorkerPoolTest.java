@@ -0,0 +1,90 @@
+package com.mycompany.httpserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pruebas unitarias para el pool de workers
+ * Verifica la cola acotada, el tiempo máximo de espera y la respuesta 503
+ */
+public class WorkerPoolTest {
+
+    @Test
+    @DisplayName("El pool debe rechazar solicitudes cuando la cola está llena")
+    void testQueueFull() throws Exception {
+        WorkerPool pool = new WorkerPool(1, 1, 60_000);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = pool.submit(() -> await(release), () -> false);
+            CompletableFuture<Boolean> queued = pool.submit(() -> true, () -> false);
+
+            assertNull(pool.submit(() -> true, () -> false), "Sin espacio en la cola la solicitud se descarta");
+            assertEquals(1, pool.getShed());
+
+            release.countDown();
+            assertTrue(running.get(5, TimeUnit.SECONDS));
+            assertTrue(queued.get(5, TimeUnit.SECONDS), "La solicitud en cola debe ejecutarse");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Una solicitud que esperó más del límite debe recibir la respuesta de sobrecarga")
+    void testQueueWaitTimeout() throws Exception {
+        WorkerPool pool = new WorkerPool(1, 4, 50);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            pool.submit(() -> await(release), () -> false);
+            CompletableFuture<Boolean> queued = pool.submit(() -> true, () -> false);
+            assertNotNull(queued);
+            Thread.sleep(100);
+            release.countDown();
+
+            assertFalse(queued.get(5, TimeUnit.SECONDS), "Debe ejecutar la respuesta de sobrecarga");
+            assertEquals(1, pool.getShed());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("El tiempo máximo de espera en la cola debe ser positivo")
+    void testInvalidQueueWait() {
+        assertThrows(IllegalArgumentException.class, () -> new WorkerPool(1, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> HttpServer.workerPool(1, 4, 0));
+    }
+
+    @Test
+    @DisplayName("La respuesta de sobrecarga debe ser 503 con Retry-After y cerrar la conexión")
+    void testOverloadedResponse() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertFalse(HttpServer.sendOverloaded(out), "La conexión debe cerrarse");
+        String response = out.toString(StandardCharsets.US_ASCII);
+        assertTrue(response.startsWith("HTTP/1.1 503 Service Unavailable\r\n"));
+        assertTrue(response.contains("Retry-After: 1\r\n"));
+        assertTrue(response.contains("Connection: close\r\n"));
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.mycompany.httpserver.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.mycompany.httpserver.WebApplication.WebApplication;
+
+/**
+ * Page load benchmark against the bundled index.html. Loads the page and every
+ * resource it references (style.css, script.js and the images) the way a
+ * browser does, first opening one connection per resource and then reusing a
+ * single keep-alive connection, with and without pipelining.
+ *
+ * Run it with:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.mycompany.httpserver.benchmark.PageLoadBenchmark
+ *
+ * @author sebastian.cardona-p
+ */
+public class PageLoadBenchmark {
+
+    private static final String HOST = "localhost";
+    private static final int PORT = 35000;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 1000;
+
+    public static void main(String[] args) throws Exception {
+        Thread serverThread = new Thread(() -> {
+            try {
+                WebApplication.main(new String[]{});
+            } catch (Exception e) {
+                System.out.println("Servidor terminado: " + e.getMessage());
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+        Thread.sleep(2000);
+
+        List<String> page = pageResources();
+        System.out.println("Page resources: " + page);
+
+        report("connection per request", page, PageLoadBenchmark::loadWithNewConnections, page.size());
+        report("keep-alive", page, p -> loadOnOneConnection(p, false), 1);
+        report("keep-alive + pipelining", page, p -> loadOnOneConnection(p, true), 1);
+    }
+
+    private interface PageLoader {
+
+        void load(List<String> page) throws IOException;
+    }
+
+    private static void report(String name, List<String> page, PageLoader loader, int connectionsPerLoad) throws IOException {
+        for (int i = 0; i < WARMUP; i++) {
+            loader.load(page);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            loader.load(page);
+        }
+        double micros = (System.nanoTime() - start) / 1000.0 / ITERATIONS;
+        System.out.printf("%-26s %10.1f us/page %4d connections/page%n", name, micros, connectionsPerLoad);
+    }
+
+    /**
+     * Get index.html and collect the path of every resource it links
+     */
+    private static List<String> pageResources() throws IOException {
+        List<String> page = new ArrayList<>();
+        page.add("/");
+        try (Socket socket = new Socket(HOST, PORT)) {
+            socket.getOutputStream().write(request("/", true));
+            String html = new String(readResponse(new BufferedInputStream(socket.getInputStream())), StandardCharsets.UTF_8);
+            Matcher matcher = Pattern.compile("(?:href|src)=\"([^\"]+)\"").matcher(html);
+            while (matcher.find()) {
+                String path = matcher.group(1).replaceFirst("^https?://[^/]+", "");
+                page.add(path.startsWith("/") ? path : "/" + path);
+            }
+        }
+        return page;
+    }
+
+    private static void loadWithNewConnections(List<String> page) throws IOException {
+        for (String path : page) {
+            try (Socket socket = new Socket(HOST, PORT)) {
+                socket.getOutputStream().write(request(path, true));
+                readResponse(new BufferedInputStream(socket.getInputStream()));
+            }
+        }
+    }
+
+    private static void loadOnOneConnection(List<String> page, boolean pipelined) throws IOException {
+        try (Socket socket = new Socket(HOST, PORT)) {
+            OutputStream out = socket.getOutputStream();
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            if (pipelined) {
+                ByteArrayOutputStream requests = new ByteArrayOutputStream();
+                for (int i = 0; i < page.size(); i++) {
+                    requests.write(request(page.get(i), i == page.size() - 1));
+                }
+                out.write(requests.toByteArray());
+                for (int i = 0; i < page.size(); i++) {
+                    readResponse(in);
+                }
+                return;
+            }
+            for (int i = 0; i < page.size(); i++) {
+                out.write(request(page.get(i), i == page.size() - 1));
+                readResponse(in);
+            }
+        }
+    }
+
+    private static byte[] request(String path, boolean close) {
+        return ("GET " + path + " HTTP/1.1\r\nHost: " + HOST + "\r\n"
+                + (close ? "Connection: close\r\n" : "") + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Read one response using its Content-Length and return the body
+     */
+    private static byte[] readResponse(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int lastFour = 0;
+        while (lastFour != 0x0D0A0D0A) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed before the end of the headers");
+            }
+            head.write(b);
+            lastFour = (lastFour << 8) | b;
+        }
+        int contentLength = 0;
+        for (String line : head.toString(StandardCharsets.ISO_8859_1).split("\r\n")) {
+            if (line.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        return in.readNBytes(contentLength);
+    }
+}